@@ -0,0 +1,111 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Lookups of many students or colleges at once, for callers that would otherwise call
+// enrolledCourses or studentsOfCollege in a loop (an idExists check plus a join per id).
+// Each lookup takes a fixed number of set-based queries, however many ids it is given
+// (IN lists are split into chunks of batch.chunkSize ids):
+//   students(ids)           - Student rows, their enrollments joined to Courses, and their
+//                             colleges (ReferenceDataCache, one IN query for the uncached ones)
+//   studentsOfColleges(ids) - College rows (the same way) and the students who chose them
+//   -Dbatch.chunkSize=500
+// Ids are deduplicated. Results map every distinct id, in the order first given, to its rows
+// (students and courses in id order), or to null if there is no such student or college, as
+// the single-id lookups do.
+class BatchLookup {
+
+    static final int CHUNK_SIZE = Integer.getInteger("batch.chunkSize", 500);
+
+    // A student with the college chosen (null if none) and the courses enrolled in
+    record StudentDetails(DataAccess.Student student, ReferenceDataCache.College college,
+                          List<ReferenceDataCache.Course> courses) {
+    }
+
+    // A college with the students who chose it
+    record CollegeStudents(ReferenceDataCache.College college, List<DataAccess.Student> students) {
+    }
+
+    static Map<Integer, StudentDetails> students(Connection conn, Collection<Integer> studentIds) throws SQLException {
+        List<Integer> ids = distinct(studentIds);
+        Map<Integer, DataAccess.Student> students = new LinkedHashMap<>();
+        forChunks(conn, "SELECT student_id, student_name, student_age, college_id_choice FROM Student WHERE student_id IN (",
+                ")", ids, rs -> students.put(rs.getInt(1),
+                        new DataAccess.Student(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getObject(4, Integer.class))));
+
+        Map<Integer, List<ReferenceDataCache.Course>> courses = new LinkedHashMap<>();
+        for (int id : students.keySet()) {
+            courses.put(id, new ArrayList<>());
+        }
+        forChunks(conn, "SELECT sc.student_id, c.course_id, c.course_name, c.course_duration FROM StudentCourses sc"
+                        + " JOIN Courses c ON sc.course_id = c.course_id WHERE sc.student_id IN (",
+                ") ORDER BY sc.student_id, c.course_id", new ArrayList<>(students.keySet()),
+                rs -> courses.get(rs.getInt(1)).add(new ReferenceDataCache.Course(rs.getInt(2), rs.getString(3), rs.getInt(4))));
+
+        Set<Integer> collegeIds = new LinkedHashSet<>();
+        for (DataAccess.Student student : students.values()) {
+            if (student.collegeId() != null) collegeIds.add(student.collegeId());
+        }
+        Map<Integer, ReferenceDataCache.College> colleges = ReferenceDataCache.colleges(conn, collegeIds);
+
+        Map<Integer, StudentDetails> result = new LinkedHashMap<>();
+        for (int id : ids) {
+            DataAccess.Student student = students.get(id);
+            result.put(id, student == null ? null : new StudentDetails(student,
+                    student.collegeId() == null ? null : colleges.get(student.collegeId()), courses.get(id)));
+        }
+        return result;
+    }
+
+    static Map<Integer, CollegeStudents> studentsOfColleges(Connection conn, Collection<Integer> collegeIds) throws SQLException {
+        List<Integer> ids = distinct(collegeIds);
+        Map<Integer, ReferenceDataCache.College> colleges = ReferenceDataCache.colleges(conn, ids);
+
+        Map<Integer, List<DataAccess.Student>> students = new LinkedHashMap<>();
+        for (int id : ids) {
+            if (colleges.get(id) != null) students.put(id, new ArrayList<>());
+        }
+        forChunks(conn, "SELECT student_id, student_name, student_age, college_id_choice FROM Student WHERE college_id_choice IN (",
+                ") ORDER BY college_id_choice, student_id", new ArrayList<>(students.keySet()),
+                rs -> students.get(rs.getInt(4)).add(
+                        new DataAccess.Student(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4))));
+
+        Map<Integer, CollegeStudents> result = new LinkedHashMap<>();
+        for (int id : ids) {
+            ReferenceDataCache.College college = colleges.get(id);
+            result.put(id, college == null ? null : new CollegeStudents(college, students.get(id)));
+        }
+        return result;
+    }
+
+    private interface RowHandler {
+        void row(ResultSet rs) throws SQLException;
+    }
+
+    // Run prefix + placeholders + suffix for every chunk of ids
+    private static void forChunks(Connection conn, String prefix, String suffix, List<Integer> ids, RowHandler handler) throws SQLException {
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + CHUNK_SIZE));
+            try (PreparedStatement pstmt = conn.prepareStatement(prefix + "?, ".repeat(chunk.size() - 1) + "?" + suffix)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setInt(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) handler.row(rs);
+                }
+            }
+        }
+    }
+
+    private static List<Integer> distinct(Collection<Integer> ids) {
+        return new ArrayList<>(new LinkedHashSet<>(ids));
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Bulk CSV/TSV loader for Student, College, Courses and StudentCourses.
+// Streams the file, writes rows with addBatch/executeBatch and commits every N rows.
+// Foreign keys are checked against id sets instead of one idExists call per row, and
+// malformed or rejected rows are written to a reject file without stopping the load.
+//
+// Columns (a header line is skipped if its first field is not a number):
+//   student     student_id, student_name, student_age, college_id_choice (empty or 0 for none), gpa (optional)
+//   college     college_id, college_name, college_fees
+//   course      course_id, course_name, course_duration
+//   enrollment  student_id, course_id
+public class BulkImporter {
+
+    static final int BATCH_SIZE = Integer.getInteger("import.batchSize", 1000);
+    static final int COMMIT_EVERY = Integer.getInteger("import.commitEvery", 10_000);
+
+    private final Connection conn;
+    private final String kind;
+    private final char delimiter;
+    private final BufferedWriter rejects;
+
+    private Set<Integer> collegeIds;
+    private Set<Integer> courseIds;
+    private final List<String> chunkLines = new ArrayList<>();
+    private final List<String[]> chunkRows = new ArrayList<>();
+    private long loaded;
+    private long rejected;
+    private long sinceCommit;
+
+    private BulkImporter(Connection conn, String kind, char delimiter, BufferedWriter rejects) {
+        this.conn = conn;
+        this.kind = kind;
+        this.delimiter = delimiter;
+        this.rejects = rejects;
+    }
+
+    // Entry point used by "java JdbcDemo import <kind> <file>"
+    static void run(Connection conn, String kind, Path file) throws SQLException, IOException {
+        if (insertSql(kind) == null) {
+            System.out.println("Unknown import type: " + kind + " (expected student, college, course or enrollment)");
+            return;
+        }
+        char delimiter = file.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+        Path rejectFile = Path.of(System.getProperty("import.rejectFile", file + ".rejects"));
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+            BulkImporter importer = new BulkImporter(conn, kind, delimiter, rejects);
+            importer.load(in, start);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Imported %d %s rows in %.2fs (%.0f rows/s), %d rejected -> %s%n",
+                    importer.loaded, kind, seconds, importer.loaded / Math.max(seconds, 1e-9),
+                    importer.rejected, rejectFile);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void load(BufferedReader in, long start) throws SQLException, IOException {
+        if (kind.equals("student")) {
+            collegeIds = loadIds("SELECT college_id FROM College");
+        } else if (kind.equals("enrollment")) {
+            courseIds = loadIds("SELECT course_id FROM Courses");
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(insertSql(kind))) {
+            String line;
+            boolean first = true;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = split(line);
+                if (first) {
+                    first = false;
+                    if (parseIntOrNull(fields[0]) == null) {
+                        continue; // header
+                    }
+                }
+                chunkLines.add(line);
+                chunkRows.add(fields);
+                if (chunkRows.size() >= BATCH_SIZE) {
+                    flushChunk(pstmt, start);
+                }
+            }
+            flushChunk(pstmt, start);
+            conn.commit();
+        }
+    }
+
+    // Validate and bind the buffered rows, execute them as one batch, and commit if due
+    private void flushChunk(PreparedStatement pstmt, long start) throws SQLException, IOException {
+        if (chunkRows.isEmpty()) {
+            return;
+        }
+        Set<Integer> studentIds = kind.equals("enrollment") ? existingStudents() : null;
+
+        List<String> batched = new ArrayList<>();
+        for (int i = 0; i < chunkRows.size(); i++) {
+            String error = bind(pstmt, chunkRows.get(i), studentIds);
+            if (error != null) {
+                reject(chunkLines.get(i), error);
+            } else {
+                pstmt.addBatch();
+                batched.add(chunkLines.get(i));
+            }
+        }
+        chunkRows.clear();
+        chunkLines.clear();
+        if (batched.isEmpty()) {
+            return;
+        }
+
+        try {
+            pstmt.executeBatch();
+            loaded += batched.size();
+        } catch (BatchUpdateException e) {
+            // With rewriteBatchedStatements the batch goes out as multi-row INSERTs, so one bad row
+            // fails every row of its statement; drivers may also stop at the first failure. Retry
+            // each failed or unreported row on its own and reject only the rows that fail alone.
+            int[] counts = e.getUpdateCounts();
+            pstmt.clearBatch();
+            for (int i = 0; i < batched.size(); i++) {
+                if (i < counts.length && counts[i] != Statement.EXECUTE_FAILED) {
+                    loaded++;
+                    continue;
+                }
+                String line = batched.get(i);
+                try {
+                    bind(pstmt, split(line), null);
+                    pstmt.executeUpdate();
+                    loaded++;
+                } catch (SQLException rowError) {
+                    reject(line, rowError.getMessage());
+                }
+            }
+        }
+
+        sinceCommit += batched.size();
+        if (sinceCommit >= COMMIT_EVERY) {
+            conn.commit();
+            sinceCommit = 0;
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("  %d rows committed (%.0f rows/s)%n", loaded, loaded / Math.max(seconds, 1e-9));
+        }
+    }
+
+    // Bind one row's parameters; returns a reject reason or null if the row is valid
+    private String bind(PreparedStatement pstmt, String[] f, Set<Integer> studentIds) throws SQLException {
+        int expected = switch (kind) {
+            case "enrollment" -> 2;
+            case "student" -> 4;
+            default -> 3;
+        };
+        if (f.length < expected || (kind.equals("student") && f.length > 5) || (!kind.equals("student") && f.length > expected)) {
+            return "expected " + expected + " fields, got " + f.length;
+        }
+        Integer id = parseIntOrNull(f[0]);
+        if (id == null) {
+            return "invalid id: " + f[0];
+        }
+        pstmt.setInt(1, id);
+
+        switch (kind) {
+            case "student" -> {
+                Integer age = parseIntOrNull(f[2]);
+                if (age == null) {
+                    return "invalid age: " + f[2];
+                }
+                Integer collegeId = f[3].isEmpty() ? Integer.valueOf(0) : parseIntOrNull(f[3]);
+                if (collegeId == null) {
+                    return "invalid college id: " + f[3];
+                }
+                if (collegeId != 0 && !collegeIds.contains(collegeId)) {
+                    return "Invalid college ID.";
+                }
+                Float gpa = null;
+                if (f.length == 5 && !f[4].isEmpty()) {
+                    try {
+                        gpa = Float.parseFloat(f[4]);
+                    } catch (NumberFormatException e) {
+                        return "invalid gpa: " + f[4];
+                    }
+                }
+                pstmt.setString(2, f[1]);
+                pstmt.setInt(3, age);
+                pstmt.setObject(4, collegeId == 0 ? null : collegeId, Types.INTEGER);
+                pstmt.setObject(5, gpa, Types.FLOAT);
+            }
+            case "college", "course" -> {
+                Integer value = parseIntOrNull(f[2]);
+                if (value == null) {
+                    return "invalid number: " + f[2];
+                }
+                pstmt.setString(2, f[1]);
+                pstmt.setInt(3, value);
+            }
+            case "enrollment" -> {
+                Integer courseId = parseIntOrNull(f[1]);
+                if (courseId == null) {
+                    return "invalid course id: " + f[1];
+                }
+                if (studentIds != null && !studentIds.contains(id)) {
+                    return "Student not found.";
+                }
+                if (!courseIds.contains(courseId)) {
+                    return "Course not found.";
+                }
+                pstmt.setInt(2, courseId);
+            }
+            default -> throw new IllegalStateException(kind);
+        }
+        return null;
+    }
+
+    // Student ids referenced by the buffered enrollment rows that exist, in one IN (...) query
+    private Set<Integer> existingStudents() throws SQLException {
+        Set<Integer> wanted = new HashSet<>();
+        for (String[] f : chunkRows) {
+            Integer id = parseIntOrNull(f[0]);
+            if (id != null) {
+                wanted.add(id);
+            }
+        }
+        Set<Integer> found = new HashSet<>();
+        if (wanted.isEmpty()) {
+            return found;
+        }
+        StringBuilder sql = new StringBuilder("SELECT student_id FROM Student WHERE student_id IN (");
+        for (int i = 0; i < wanted.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (int id : wanted) {
+                pstmt.setInt(index++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getInt(1));
+                }
+            }
+        }
+        return found;
+    }
+
+    private Set<Integer> loadIds(String query) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private void reject(String line, String reason) throws IOException {
+        rejected++;
+        rejects.write(line);
+        rejects.write("\t# ");
+        rejects.write(reason == null ? "rejected" : reason.replace('\n', ' '));
+        rejects.newLine();
+    }
+
+    static String insertSql(String kind) {
+        return switch (kind) {
+            case "student" -> "INSERT INTO Student (student_id, student_name, student_age, college_id_choice, gpa) VALUES (?, ?, ?, ?, ?)";
+            case "college" -> "INSERT INTO College (college_id, college_name, college_fees) VALUES (?, ?, ?)";
+            case "course" -> "INSERT INTO Courses (course_id, course_name, course_duration) VALUES (?, ?, ?)";
+            case "enrollment" -> "INSERT INTO StudentCourses (student_id, course_id) VALUES (?, ?)";
+            default -> null;
+        };
+    }
+
+    // Split a line on the delimiter; fields may be wrapped in double quotes ("" escapes a quote)
+    private String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+
+    private static Integer parseIntOrNull(String s) {
+        try {
+            return Integer.valueOf(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
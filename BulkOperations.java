@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Properties;
+
+// Bulk variants of deleteStudent, updateCollegeChoice / deleteStudentFromCollege and
+// deleteCollege. A job walks its selection of students in student_id order, bulk.chunkSize rows
+// at a time, and commits after every chunk. No transaction holds more than one chunk of row
+// locks, so other clients are never blocked for long. Deleting a college first detaches its
+// students chunk by chunk; only the final delete (cascading to its CollegeCourses rows) is one
+// transaction.
+//   -Dbulk.chunkSize=1000
+//   -Dbulk.checkpointDir=bulk-checkpoints   progress of unfinished jobs
+//   -Dbulk.progressMs=1000                  interval between progress lines
+// After every chunk the last student id is written to a checkpoint file named after the job.
+// Because chunks are committed as they go, a job that fails is partly applied; running the same
+// job again resumes after the checkpoint. A finished job deletes its checkpoint. Each chunk
+// (selection included, under FOR UPDATE) is one TransactionRetry transaction.
+//
+// Jobs commit on the connection they are given; the menu commits pending work before starting one.
+class BulkOperations {
+
+    static final int CHUNK_SIZE = Integer.getInteger("bulk.chunkSize", 1000);
+    static final Path CHECKPOINT_DIR = Path.of(System.getProperty("bulk.checkpointDir", "bulk-checkpoints"));
+    static final long PROGRESS_NANOS = Long.getLong("bulk.progressMs", 1000L) * 1_000_000L;
+
+    // Which students a job applies to
+    static final class Selection {
+        final String description;
+        private final String where;   // SQL condition, or null for an explicit id list
+        private final int[] params;
+        private final int[] ids;      // sorted, distinct
+
+        private Selection(String description, String where, int[] params, int[] ids) {
+            this.description = description;
+            this.where = where;
+            this.params = params;
+            this.ids = ids;
+        }
+
+        static Selection range(int fromId, int toId) {
+            return new Selection("students " + fromId + "-" + toId, "student_id BETWEEN ? AND ?", new int[]{fromId, toId}, null);
+        }
+
+        static Selection college(int collegeId) {
+            return new Selection("students of college " + collegeId, "college_id_choice = ?", new int[]{collegeId}, null);
+        }
+
+        // The description carries a digest of the list, so a checkpoint only resumes the same list
+        static Selection ids(int... studentIds) {
+            int[] sorted = Arrays.stream(studentIds).sorted().distinct().toArray();
+            return new Selection(sorted.length + " listed students " + digest(sorted), null, null, sorted);
+        }
+
+        private static String digest(int[] ids) {
+            try {
+                MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                for (int id : ids) {
+                    sha.update(new byte[]{(byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id});
+                }
+                return HexFormat.of().formatHex(sha.digest(), 0, 8);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // Up to limit existing selected student ids after afterId, ascending, locked for the chunk
+        int[] next(Connection conn, int afterId, int limit) throws SQLException {
+            if (where == null) {
+                return nextListed(conn, afterId, limit);
+            }
+            String query = "SELECT student_id FROM Student WHERE " + where + " AND student_id > ? ORDER BY student_id LIMIT ? FOR UPDATE";
+            int[] chunk = new int[limit];
+            int n = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                int index = bind(pstmt);
+                pstmt.setInt(index, afterId);
+                pstmt.setInt(index + 1, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) chunk[n++] = rs.getInt(1);
+                }
+            }
+            return Arrays.copyOf(chunk, n);
+        }
+
+        // The listed ids after afterId that exist, taking limit listed ids at a time until some exist
+        private int[] nextListed(Connection conn, int afterId, int limit) throws SQLException {
+            int from = Arrays.binarySearch(ids, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            while (from < ids.length) {
+                int[] window = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + limit));
+                from += window.length;
+                String query = "SELECT student_id FROM Student WHERE student_id IN (" + placeholders(window.length)
+                        + ") ORDER BY student_id FOR UPDATE";
+                int[] chunk = new int[window.length];
+                int n = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                    for (int i = 0; i < window.length; i++) {
+                        pstmt.setInt(i + 1, window[i]);
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) chunk[n++] = rs.getInt(1);
+                    }
+                }
+                if (n > 0) {
+                    return Arrays.copyOf(chunk, n);
+                }
+            }
+            return new int[0];
+        }
+
+        // Selected students after afterId (for an id list: listed ids, whether or not they exist)
+        long remaining(Connection conn, int afterId) throws SQLException {
+            if (where == null) {
+                return Arrays.stream(ids).filter(id -> id > afterId).count();
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM Student WHERE " + where + " AND student_id > ?")) {
+                pstmt.setInt(bind(pstmt), afterId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        }
+
+        private int bind(PreparedStatement pstmt) throws SQLException {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setInt(i + 1, params[i]);
+            }
+            return params.length + 1;
+        }
+    }
+
+    record Result(long rows, long chunks, Integer resumedAfter, long elapsedNanos) {
+        String describe() {
+            return rows + " rows in " + chunks + " chunks, " + String.format("%.1f", elapsedNanos / 1e9) + "s"
+                    + (resumedAfter != null ? " (resumed after student ID " + resumedAfter + ")" : "");
+        }
+    }
+
+    // What a job does to one chunk of selected students; returns the number of rows changed
+    private interface ChunkAction {
+        int apply(Connection conn, int[] studentIds) throws SQLException;
+    }
+
+    private record Chunk(int[] ids, int rows) {
+    }
+
+    static Result deleteStudents(Connection conn, Selection selection) throws SQLException {
+        return run(conn, "delete " + selection.description, selection, (c, ids) -> {
+            int rows = deleteByIds(c, ids);
+            for (int id : ids) {
+                NameSearchIndex.studentDeleted(id);
+                MutationJournal.record(MutationJournal.Op.DELETE_STUDENT, id);
+            }
+            return rows;
+        });
+    }
+
+    // Set the college choice of the selected students; null removes them from their college
+    static Result moveStudents(Connection conn, Selection selection, Integer collegeId) throws SQLException {
+        return run(conn, "move " + selection.description + " to " + (collegeId == null ? "no college" : "college " + collegeId), selection,
+                (c, ids) -> {
+                    int[] changing = notIn(c, collegeId, ids);
+                    if (changing.length == 0) return 0;
+                    int rows = setCollegeChoice(c, collegeId, changing);
+                    for (int id : changing) {
+                        MutationJournal.record(MutationJournal.Op.SET_COLLEGE_CHOICE, id, collegeId == null ? 0 : collegeId);
+                    }
+                    return rows;
+                });
+    }
+
+    // The (already locked) students whose college choice is not collegeId, i.e. the ones a move changes
+    private static int[] notIn(Connection conn, Integer collegeId, int[] ids) throws SQLException {
+        String condition = collegeId == null ? "college_id_choice IS NOT NULL"
+                : "(college_id_choice IS NULL OR college_id_choice <> ?)";
+        String query = "SELECT student_id FROM Student WHERE student_id IN (" + placeholders(ids.length) + ") AND " + condition;
+        int[] changing = new int[ids.length];
+        int n = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            int index = 1;
+            for (int id : ids) {
+                pstmt.setInt(index++, id);
+            }
+            if (collegeId != null) {
+                pstmt.setInt(index, collegeId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) changing[n++] = rs.getInt(1);
+            }
+        }
+        Arrays.sort(changing, 0, n);
+        return Arrays.copyOf(changing, n);
+    }
+
+    // Detach the college's students chunk by chunk, then delete the college
+    static DataAccess.Outcome deleteCollege(Connection conn, int collegeId) throws SQLException {
+        if (!ReferenceDataCache.collegeExists(conn, collegeId)) return DataAccess.Outcome.COLLEGE_NOT_FOUND;
+        System.out.println("Detached " + moveStudents(conn, Selection.college(collegeId), null).describe());
+        DataAccess.Outcome outcome = TransactionRetry.DEFAULT.transaction(conn, c -> DataAccess.deleteCollege(c, collegeId));
+        ReportCounters.invalidate();
+        return outcome;
+    }
+
+    private static Result run(Connection conn, String job, Selection selection, ChunkAction action) throws SQLException {
+        Path checkpoint = CHECKPOINT_DIR.resolve(job.replaceAll("[^A-Za-z0-9]+", "-") + ".checkpoint");
+        Integer resumedAfter = readCheckpoint(checkpoint, job);
+        int after = resumedAfter != null ? resumedAfter : Integer.MIN_VALUE;
+        long total = selection.remaining(conn, after);
+        conn.commit();
+        if (resumedAfter != null) {
+            System.out.println("Resuming '" + job + "' after student ID " + resumedAfter);
+        }
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long rows = 0;
+        long chunks = 0;
+        try {
+            while (true) {
+                int from = after;
+                Chunk chunk = TransactionRetry.DEFAULT.transaction(conn, c -> {
+                    int[] ids = selection.next(c, from, CHUNK_SIZE);
+                    return new Chunk(ids, ids.length == 0 ? 0 : action.apply(c, ids));
+                });
+                if (chunk.ids().length == 0) break;
+                after = chunk.ids()[chunk.ids().length - 1];
+                rows += chunk.rows();
+                chunks++;
+                ReportCounters.invalidate();
+                writeCheckpoint(checkpoint, job, after);
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_NANOS) {
+                    lastReport = now;
+                    System.out.printf("%s: %d of ~%d rows, last student ID %d, %.0f rows/s%n", job, rows, total, after,
+                            rows / Math.max(1e-9, (now - start) / 1e9));
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (chunks > 0 || resumedAfter != null) {
+                System.out.println("'" + job + "' stopped after student ID " + after + "; run it again to resume.");
+            }
+            throw e;
+        }
+        try {
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException e) {
+            System.out.println("Could not remove checkpoint " + checkpoint + ": " + e.getMessage());
+        }
+        return new Result(rows, chunks, resumedAfter, System.nanoTime() - start);
+    }
+
+    private static int deleteByIds(Connection conn, int[] ids) throws SQLException {
+        String sql = "DELETE FROM Student WHERE student_id IN (" + placeholders(ids.length) + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bindIds(pstmt, 1, ids);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static int setCollegeChoice(Connection conn, Integer collegeId, int[] ids) throws SQLException {
+        String sql = "UPDATE Student SET college_id_choice = ? WHERE student_id IN (" + placeholders(ids.length) + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setObject(1, collegeId, java.sql.Types.INTEGER);
+            bindIds(pstmt, 2, ids);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static void bindIds(PreparedStatement pstmt, int index, int[] ids) throws SQLException {
+        for (int id : ids) {
+            pstmt.setInt(index++, id);
+        }
+    }
+
+    private static String placeholders(int n) {
+        return "?, ".repeat(n - 1) + "?";
+    }
+
+    // The last committed student id of an unfinished run of the same job, or null
+    private static Integer readCheckpoint(Path checkpoint, String job) {
+        if (!Files.exists(checkpoint)) return null;
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable checkpoint " + checkpoint + ": " + e.getMessage());
+            return null;
+        }
+        String lastId = properties.getProperty("lastId");
+        return job.equals(properties.getProperty("job")) && lastId != null ? Integer.valueOf(lastId) : null;
+    }
+
+    // Best effort: without a checkpoint a rerun starts over, which only repeats finished chunks' selects
+    private static void writeCheckpoint(Path checkpoint, String job, int lastId) {
+        Properties properties = new Properties();
+        properties.setProperty("job", job);
+        properties.setProperty("lastId", Integer.toString(lastId));
+        try {
+            Files.createDirectories(CHECKPOINT_DIR);
+            Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not write checkpoint " + checkpoint + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+// When to commit a run of menu operations, and isolation of each operation inside the run.
+// Every operation runs under its own Savepoint: if it throws, only its own writes are rolled
+// back and the rest of the pending batch stays. The batch is committed after the operation that
+// reaches any configured limit:
+//   -Dcommit.everyOps=N      N operations since the last commit
+//   -Dcommit.everyMs=T       T milliseconds since the first uncommitted operation
+//   -Dcommit.everyBytes=B    B bytes bound to write statements (Instrumentation's estimate)
+//   -Dcommit.savepoints=false  run operations without savepoints
+// Limits are checked between operations, never from a timer thread, since the connection is
+// not shared. With no limit set, commits happen only on menu choice 27, as before.
+//
+// Savepoints are not released one by one: that would cost a round trip per operation, and the
+// commit releases them all.
+class CommitPolicy {
+
+    static final int EVERY_OPS = Integer.getInteger("commit.everyOps", 0);
+    static final long EVERY_MS = Long.getLong("commit.everyMs", 0L);
+    static final long EVERY_BYTES = Long.getLong("commit.everyBytes", 0L);
+    static final boolean SAVEPOINTS = !"false".equals(System.getProperty("commit.savepoints"));
+
+    // An operation gets the savepoint it runs under (null without savepoints), so it can
+    // roll back to it instead of setting one of its own
+    interface Operation {
+        boolean run(Savepoint savepoint) throws SQLException;
+    }
+
+    private final int everyOps;
+    private final long everyNanos;
+    private final long everyBytes;
+
+    private int pendingOps;
+    private long firstPendingAt;
+    private long bytesAtCommit = Instrumentation.writtenBytes();
+    private long commits;
+    private long isolatedFailures;
+
+    CommitPolicy(int everyOps, long everyMillis, long everyBytes) {
+        this.everyOps = everyOps;
+        this.everyNanos = everyMillis * 1_000_000L;
+        this.everyBytes = everyBytes;
+    }
+
+    static CommitPolicy fromProperties() {
+        return new CommitPolicy(EVERY_OPS, EVERY_MS, EVERY_BYTES);
+    }
+
+    boolean isAutomatic() {
+        return everyOps > 0 || everyNanos > 0 || everyBytes > 0;
+    }
+
+    long commits() {
+        return commits;
+    }
+
+    // Run one operation under a savepoint, then commit if a limit is reached.
+    // If the operation throws, its writes are undone and the exception is rethrown.
+    boolean run(Connection conn, Operation operation) throws SQLException {
+        Savepoint savepoint = SAVEPOINTS ? conn.setSavepoint() : null;
+        int journalMark = MutationJournal.mark();
+        if (pendingOps == 0) {
+            firstPendingAt = System.nanoTime();
+        }
+        boolean result;
+        try {
+            result = operation.run(savepoint);
+        } catch (SQLException | RuntimeException e) {
+            undo(conn, savepoint, journalMark, e);
+            throw e;
+        }
+        pendingOps++;
+        if (due()) {
+            commit(conn);
+        }
+        return result;
+    }
+
+    private boolean due() {
+        return (everyOps > 0 && pendingOps >= everyOps)
+                || (everyNanos > 0 && System.nanoTime() - firstPendingAt >= everyNanos)
+                || (everyBytes > 0 && Instrumentation.writtenBytes() - bytesAtCommit >= everyBytes);
+    }
+
+    // Writes of the failed operation may already be reflected in the name index (reference data
+    // it wrote stays uncached until the transaction ends)
+    private void undo(Connection conn, Savepoint savepoint, int journalMark, Exception cause) throws SQLException {
+        NameSearchIndex.rolledBackToSavepoint();
+        if (savepoint == null) {
+            return;
+        }
+        try {
+            conn.rollback(savepoint);
+            ReportCounters.invalidate();
+            MutationJournal.discardFrom(journalMark);
+            isolatedFailures++;
+        } catch (SQLException e) {
+            // The server already ended the transaction (e.g. deadlock): the whole batch is gone
+            conn.rollback();
+            ReferenceDataCache.rolledBack();
+            NameSearchIndex.rolledBack();
+            ReportCounters.rolledBack();
+            MutationJournal.rolledBack();
+            if (JdbcDemo.router != null) JdbcDemo.router.rolledBack();
+            reset();
+            cause.addSuppressed(e);
+        }
+    }
+
+    // Commit everything pending now (menu choice 27, end of a script)
+    void commit(Connection conn) throws SQLException {
+        conn.commit();
+        ReferenceDataCache.committed();
+        NameSearchIndex.committed();
+        ReportCounters.committed();
+        MutationJournal.committed();
+        if (JdbcDemo.router != null) JdbcDemo.router.committed();
+        commits++;
+        reset();
+    }
+
+    // Forget pending operations after an explicit rollback
+    void reset() {
+        pendingOps = 0;
+        bytesAtCommit = Instrumentation.writtenBytes();
+    }
+
+    String stats() {
+        return "Commit policy [everyOps=" + everyOps + ", everyMs=" + everyNanos / 1_000_000L
+                + ", everyBytes=" + everyBytes + ", savepoints=" + SAVEPOINTS + ", commits=" + commits
+                + ", isolatedFailures=" + isolatedFailures + ", pendingOps=" + pendingOps + "]";
+    }
+}
@@ -0,0 +1,359 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Simple bounded JDBC connection pool.
+// Connections handed out by borrow() are proxies: calling close() on them returns
+// the physical connection to the pool instead of closing it. Each physical connection
+// owns a StatementCache that serves prepareStatement(String) calls.
+public class ConnectionPool implements AutoCloseable {
+
+    // No connection became free within the borrow timeout: the pool is saturated
+    static class BorrowTimeoutException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+
+        BorrowTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledEntry> idle = new ArrayDeque<>(); // most recently used first
+    private final ScheduledExecutorService evictor;
+    private int openCount; // physical connections open or being opened
+    private boolean closed;
+
+    // Metrics
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize) throws SQLException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+
+        // Pre-fill up to the minimum size
+        for (int i = 0; i < minSize; i++) {
+            idle.addLast(new PooledEntry(openPhysical()));
+            openCount++;
+        }
+
+        if (idleTimeoutMillis > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "pool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1, idleTimeoutMillis / 2);
+            evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    // Borrow a connection, waiting up to the borrow timeout for one to become free
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        while (true) {
+            PooledEntry entry = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    entry = idle.pollFirst();
+                    if (entry != null) {
+                        break;
+                    }
+                    if (openCount < maxSize) {
+                        openCount++; // reserve a slot, connect outside the lock
+                        create = true;
+                        break;
+                    }
+                    if (remaining <= 0) {
+                        borrowTimeouts.incrementAndGet();
+                        throw new BorrowTimeoutException("Timed out after " + borrowTimeoutMillis + " ms waiting for a pooled connection");
+                    }
+                    try {
+                        remaining = available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a pooled connection", e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    entry = new PooledEntry(openPhysical());
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!isValid(entry)) {
+                validationFailures.incrementAndGet();
+                entry.closePhysical();
+                releaseSlot();
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+            borrows.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            return entry.lease();
+        }
+    }
+
+    // Return a physical connection to the pool, resetting its transaction state
+    private void giveBack(PooledEntry entry) {
+        try {
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            entry.closePhysical();
+            releaseSlot();
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                entry.closePhysical();
+                openCount--;
+                return;
+            }
+            entry.lastUsed = System.nanoTime();
+            idle.addFirst(entry);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            openCount--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isValid(PooledEntry entry) {
+        try {
+            return entry.physical.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Close connections idle longer than the idle timeout, never going below the minimum size
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        lock.lock();
+        try {
+            // Oldest entries sit at the tail
+            Iterator<PooledEntry> it = idle.descendingIterator();
+            while (it.hasNext() && openCount > minSize) {
+                PooledEntry entry = it.next();
+                if (entry.lastUsed - cutoff > 0) {
+                    break;
+                }
+                it.remove();
+                openCount--;
+                evicted.incrementAndGet();
+                entry.closePhysical();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        created.incrementAndGet();
+        return conn;
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // Nothing useful to do with a failing close
+        }
+    }
+
+    public String stats() {
+        int idleCount;
+        int open;
+        lock.lock();
+        try {
+            idleCount = idle.size();
+            open = openCount;
+        } finally {
+            lock.unlock();
+        }
+        long n = borrows.get();
+        return "Pool [open=" + open + ", idle=" + idleCount + ", max=" + maxSize
+                + ", borrows=" + n
+                + ", avgWaitMs=" + String.format("%.3f", n == 0 ? 0.0 : totalWaitNanos.get() / 1e6 / n)
+                + ", maxWaitMs=" + String.format("%.3f", maxWaitNanos.get() / 1e6)
+                + ", timeouts=" + borrowTimeouts.get()
+                + ", created=" + created.get()
+                + ", evicted=" + evicted.get()
+                + ", validationFailures=" + validationFailures.get()
+                + ", stmtCacheHits=" + statementHits.get()
+                + ", stmtCacheMisses=" + statementMisses.get() + "]";
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (PooledEntry entry : idle) {
+                entry.closePhysical();
+                openCount--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+    }
+
+    public long statementCacheHits() {
+        return statementHits.get();
+    }
+
+    public long statementCacheMisses() {
+        return statementMisses.get();
+    }
+
+    // A physical connection plus its pool bookkeeping
+    private final class PooledEntry {
+        final Connection physical;
+        final StatementCache statements;
+        long lastUsed = System.nanoTime();
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementHits, statementMisses)
+                    : null;
+        }
+
+        void closePhysical() {
+            if (statements != null) {
+                statements.closeAll();
+            }
+            closeQuietly(physical);
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(this));
+        }
+    }
+
+    // Logical connection handed to callers; close() gives the physical connection back
+    private final class Lease implements InvocationHandler {
+        private final PooledEntry entry;
+        private boolean released;
+
+        Lease(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!released) {
+                        released = true;
+                        giveBack(entry);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released || entry.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + entry.physical;
+                }
+                default -> {
+                    if (released) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    if (entry.statements != null && method.getName().equals("prepareStatement")
+                            && args.length == 1) {
+                        return entry.statements.prepare((String) args[0], (Connection) proxy);
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,645 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.sql.Types.INTEGER;
+
+// Data access for the JdbcDemo operations, separated from the console prompts and output.
+// Mutations return an Outcome carrying the same message the menu prints; queries return rows.
+//
+// Two modes for the mutations:
+//   check-then-act (default) - look up every referenced id with idExists before writing,
+//                              one round trip per check, as the menu always did
+//   set-based (-Dops.setBased=true) - issue the write directly and let the PK/FK constraints in
+//                              init_db.sql reject it; the failure is mapped back to the same
+//                              Outcome, with a diagnostic lookup only on the failure path.
+//                              Usually one round trip, and no check/write race between clients.
+//
+// Enrollment requires the student to hold every transitive prerequisite of the course in
+// StudentCourses, checked against the cached PrerequisiteGraph (-Dops.prerequisites=false
+// turns the check off).
+//
+// Successful writes are staged in the MutationJournal (when journal.dir is set) and journaled
+// once the transaction commits.
+class DataAccess {
+
+    static boolean setBased = Boolean.getBoolean("ops.setBased");
+    static final boolean ENFORCE_PREREQUISITES = !"false".equals(System.getProperty("ops.prerequisites"));
+
+    enum Outcome {
+        STUDENT_ADDED(true, "Student added successfully!"),
+        COLLEGE_ADDED(true, "College added successfully!"),
+        COURSE_ADDED(true, "Course added successfully!"),
+        STUDENT_ADDED_TO_COLLEGE(true, "Student added to college successfully!"),
+        COLLEGE_CHOICE_UPDATED(true, "College choice updated successfully!"),
+        STUDENT_MOVED_TO_NEW_COLLEGE(true, "Student's college choice updated to new college!"),
+        STUDENT_REMOVED_FROM_COLLEGE(true, "Student removed from college successfully!"),
+        COURSE_DELETED(true, "Course deleted successfully!"),
+        STUDENT_DELETED(true, "Student deleted successfully!"),
+        COLLEGE_DELETED(true, "College deleted successfully!"),
+        COLLEGE_FEE_UPDATED(true, "College fee updated successfully!"),
+        COURSE_ADDED_TO_COLLEGE(true, "Course added to college successfully!"),
+        ENROLLED(true, "Student enrolled in course successfully!"),
+        ENROLLED_NOT_OFFERED(true, "Warning: Course may not be offered by student's college.\nStudent enrolled in course successfully!"),
+        STUDENT_REMOVED_FROM_COURSE(true, "Student removed from course successfully!"),
+        STUDENT_UPDATED(true, "Student details updated successfully!"),
+        COURSE_UPDATED(true, "Course details updated successfully!"),
+        COURSE_REMOVED_FROM_COLLEGE(true, "Course removed from college successfully!"),
+        PREREQUISITE_ADDED(true, "Prerequisite added successfully!"),
+        PREREQUISITE_REMOVED(true, "Prerequisite removed successfully!"),
+
+        STUDENT_EXISTS(false, "Student ID already exists."),
+        COLLEGE_EXISTS(false, "College ID already exists."),
+        COURSE_EXISTS(false, "Course ID already exists."),
+        INVALID_COLLEGE(false, "Invalid college ID."),
+        STUDENT_NOT_FOUND(false, "Student not found."),
+        COLLEGE_NOT_FOUND(false, "College not found."),
+        COURSE_NOT_FOUND(false, "Course not found."),
+        COURSE_ALREADY_IN_COLLEGE(false, "Course already added to college."),
+        ALREADY_ENROLLED(false, "Student already enrolled in course."),
+        ALREADY_ENROLLED_NOT_OFFERED(false, "Warning: Course may not be offered by student's college.\nStudent already enrolled in course."),
+        ENROLLMENT_NOT_FOUND(false, "Enrollment not found."),
+        ASSOCIATION_NOT_FOUND(false, "Association not found."),
+        NO_UPDATES(false, "No updates provided."),
+        MISSING_PREREQUISITES(false, "Student has not completed all prerequisites for this course."),
+        MISSING_PREREQUISITES_NOT_OFFERED(false, "Warning: Course may not be offered by student's college.\nStudent has not completed all prerequisites for this course."),
+        PREREQUISITE_EXISTS(false, "Prerequisite already exists."),
+        PREREQUISITE_CYCLE(false, "Prerequisite would create a cycle."),
+        PREREQUISITE_NOT_FOUND(false, "Prerequisite not found.");
+
+        final boolean success;
+        final String message;
+
+        Outcome(boolean success, String message) {
+            this.success = success;
+            this.message = message;
+        }
+
+        /** The same enrollment outcome, carrying the not-offered warning when the college lacks the course. */
+        Outcome withOffering(boolean offered) {
+            if (offered) return this;
+            switch (this) {
+                case ENROLLED: return ENROLLED_NOT_OFFERED;
+                case ALREADY_ENROLLED: return ALREADY_ENROLLED_NOT_OFFERED;
+                case MISSING_PREREQUISITES: return MISSING_PREREQUISITES_NOT_OFFERED;
+                default: return this;
+            }
+        }
+    }
+
+    static Outcome addStudent(Connection conn, int studentId, String studentName, int studentAge, int collegeIdChoice) throws SQLException {
+        if (!setBased) {
+            if (JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_EXISTS;
+            if (collegeIdChoice != 0 && !ReferenceDataCache.collegeExists(conn, collegeIdChoice)) return Outcome.INVALID_COLLEGE;
+        }
+        String query = "INSERT INTO Student (student_id, student_name, student_age, college_id_choice) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, studentId);
+            pstmt.setString(2, studentName);
+            pstmt.setInt(3, studentAge);
+            pstmt.setObject(4, collegeIdChoice == 0 ? null : collegeIdChoice, INTEGER);
+            pstmt.executeUpdate();
+            ReportCounters.studentAdded(collegeIdChoice == 0 ? null : collegeIdChoice, studentAge);
+            NameSearchIndex.studentAdded(studentId, studentName);
+            MutationJournal.record(MutationJournal.Op.ADD_STUDENT, studentName, studentId, studentAge, collegeIdChoice);
+            return Outcome.STUDENT_ADDED;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return Outcome.STUDENT_EXISTS;
+            if (isForeignKeyViolation(e)) return Outcome.INVALID_COLLEGE;
+            throw e;
+        }
+    }
+
+    static Outcome addCollege(Connection conn, int collegeId, String collegeName, int collegeFees) throws SQLException {
+        if (!setBased && ReferenceDataCache.collegeExists(conn, collegeId)) return Outcome.COLLEGE_EXISTS;
+        String query = "INSERT INTO College (college_id, college_name, college_fees) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, collegeId);
+            pstmt.setString(2, collegeName);
+            pstmt.setInt(3, collegeFees);
+            pstmt.executeUpdate();
+            ReferenceDataCache.invalidateCollege(collegeId); // drop a cached "not found"
+            MutationJournal.record(MutationJournal.Op.ADD_COLLEGE, collegeName, collegeId, collegeFees);
+            return Outcome.COLLEGE_ADDED;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return Outcome.COLLEGE_EXISTS;
+            throw e;
+        }
+    }
+
+    static Outcome addCourse(Connection conn, int courseId, String courseName, int courseDuration) throws SQLException {
+        if (!setBased && ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_EXISTS;
+        String query = "INSERT INTO Courses (course_id, course_name, course_duration) VALUES (?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, courseId);
+            pstmt.setString(2, courseName);
+            pstmt.setInt(3, courseDuration);
+            pstmt.executeUpdate();
+            ReferenceDataCache.invalidateCourse(courseId); // drop a cached "not found"
+            MutationJournal.record(MutationJournal.Op.ADD_COURSE, courseName, courseId, courseDuration);
+            return Outcome.COURSE_ADDED;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return Outcome.COURSE_EXISTS;
+            throw e;
+        }
+    }
+
+    static Outcome addStudentToCollege(Connection conn, int studentId, int collegeId) throws SQLException {
+        return setCollegeChoice(conn, studentId, collegeId, Outcome.STUDENT_ADDED_TO_COLLEGE);
+    }
+
+    static Outcome updateCollegeChoice(Connection conn, int studentId, int collegeId) throws SQLException {
+        return setCollegeChoice(conn, studentId, collegeId, Outcome.COLLEGE_CHOICE_UPDATED);
+    }
+
+    static Outcome moveStudentToNewCollege(Connection conn, int studentId, int collegeId) throws SQLException {
+        return setCollegeChoice(conn, studentId, collegeId, Outcome.STUDENT_MOVED_TO_NEW_COLLEGE);
+    }
+
+    // An UPDATE that matches no row means the student is missing; an FK failure means the college is
+    private static Outcome setCollegeChoice(Connection conn, int studentId, int collegeId, Outcome success) throws SQLException {
+        if (!setBased) {
+            if (!JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_NOT_FOUND;
+            if (!ReferenceDataCache.collegeExists(conn, collegeId)) return Outcome.COLLEGE_NOT_FOUND;
+        }
+        ReportCounters.Row before = ReportCounters.row(conn, studentId);
+        String query = "UPDATE Student SET college_id_choice = ? WHERE student_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, collegeId);
+            pstmt.setInt(2, studentId);
+            if (pstmt.executeUpdate() == 0) return Outcome.STUDENT_NOT_FOUND;
+            ReportCounters.studentMoved(before, collegeId);
+            MutationJournal.record(MutationJournal.Op.SET_COLLEGE_CHOICE, studentId, collegeId);
+            return success;
+        } catch (SQLException e) {
+            if (isForeignKeyViolation(e)) return Outcome.COLLEGE_NOT_FOUND;
+            throw e;
+        }
+    }
+
+    static Outcome deleteStudentFromCollege(Connection conn, int studentId) throws SQLException {
+        if (!setBased && !JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_NOT_FOUND;
+        ReportCounters.Row before = ReportCounters.row(conn, studentId);
+        String query = "UPDATE Student SET college_id_choice = NULL WHERE student_id = ?";
+        if (!updateById(conn, query, studentId)) return Outcome.STUDENT_NOT_FOUND;
+        ReportCounters.studentMoved(before, null);
+        MutationJournal.record(MutationJournal.Op.SET_COLLEGE_CHOICE, studentId, 0);
+        return Outcome.STUDENT_REMOVED_FROM_COLLEGE;
+    }
+
+    static Outcome deleteCourse(Connection conn, int courseId) throws SQLException {
+        if (!setBased && !ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+        String query = "DELETE FROM Courses WHERE course_id = ?";
+        if (!updateById(conn, query, courseId)) return Outcome.COURSE_NOT_FOUND;
+        ReferenceDataCache.courseDeleted(courseId);
+        MutationJournal.record(MutationJournal.Op.DELETE_COURSE, courseId);
+        return Outcome.COURSE_DELETED;
+    }
+
+    static Outcome deleteStudent(Connection conn, int studentId) throws SQLException {
+        if (!setBased && !JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_NOT_FOUND;
+        ReportCounters.Row before = ReportCounters.row(conn, studentId);
+        String query = "DELETE FROM Student WHERE student_id = ?";
+        if (!updateById(conn, query, studentId)) return Outcome.STUDENT_NOT_FOUND;
+        ReportCounters.studentDeleted(before);
+        NameSearchIndex.studentDeleted(studentId);
+        MutationJournal.record(MutationJournal.Op.DELETE_STUDENT, studentId);
+        return Outcome.STUDENT_DELETED;
+    }
+
+    static Outcome deleteCollege(Connection conn, int collegeId) throws SQLException {
+        if (!setBased && !ReferenceDataCache.collegeExists(conn, collegeId)) return Outcome.COLLEGE_NOT_FOUND;
+        String query = "DELETE FROM College WHERE college_id = ?";
+        if (!updateById(conn, query, collegeId)) return Outcome.COLLEGE_NOT_FOUND;
+        ReferenceDataCache.collegeDeleted(collegeId);
+        ReportCounters.collegeDeleted(collegeId);
+        MutationJournal.record(MutationJournal.Op.DELETE_COLLEGE, collegeId);
+        return Outcome.COLLEGE_DELETED;
+    }
+
+    static Outcome updateCollegeFee(Connection conn, int collegeId, int newFees) throws SQLException {
+        if (!setBased && !ReferenceDataCache.collegeExists(conn, collegeId)) return Outcome.COLLEGE_NOT_FOUND;
+        String query = "UPDATE College SET college_fees = ? WHERE college_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, newFees);
+            pstmt.setInt(2, collegeId);
+            if (pstmt.executeUpdate() == 0) return Outcome.COLLEGE_NOT_FOUND;
+            ReferenceDataCache.invalidateCollege(collegeId);
+            MutationJournal.record(MutationJournal.Op.UPDATE_COLLEGE_FEE, collegeId, newFees);
+            return Outcome.COLLEGE_FEE_UPDATED;
+        }
+    }
+
+    static Outcome addCourseToCollege(Connection conn, int collegeId, int courseId) throws SQLException {
+        if (!setBased) {
+            if (!ReferenceDataCache.collegeExists(conn, collegeId)) return Outcome.COLLEGE_NOT_FOUND;
+            if (!ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+            String checkQuery = "SELECT 1 FROM CollegeCourses WHERE college_id = ? AND course_id = ?";
+            try (PreparedStatement checkPstmt = conn.prepareStatement(checkQuery)) {
+                checkPstmt.setInt(1, collegeId);
+                checkPstmt.setInt(2, courseId);
+                try (ResultSet rs = checkPstmt.executeQuery()) {
+                    if (rs.next()) return Outcome.COURSE_ALREADY_IN_COLLEGE;
+                }
+            }
+        }
+        String query = "INSERT INTO CollegeCourses (college_id, course_id) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, collegeId);
+            pstmt.setInt(2, courseId);
+            pstmt.executeUpdate();
+            ReferenceDataCache.invalidateCollegeCourses(collegeId);
+            MutationJournal.record(MutationJournal.Op.ADD_COURSE_TO_COLLEGE, collegeId, courseId);
+            return Outcome.COURSE_ADDED_TO_COLLEGE;
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return Outcome.COURSE_ALREADY_IN_COLLEGE;
+            if (isForeignKeyViolation(e)) {
+                Outcome missing = missingCollegeOrCourse(conn, collegeId, courseId);
+                if (missing != null) return missing;
+            }
+            throw e;
+        }
+    }
+
+    static Outcome enrollStudentInCourse(Connection conn, int studentId, int courseId) throws SQLException {
+        if (!setBased) {
+            if (!JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_NOT_FOUND;
+            if (!ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+            // the warning goes with every outcome once both exist, not just a successful enrollment
+            boolean offered = isOfferedToStudent(conn, studentId, courseId);
+            String checkQuery = "SELECT 1 FROM StudentCourses WHERE student_id = ? AND course_id = ?";
+            try (PreparedStatement checkPstmt = conn.prepareStatement(checkQuery)) {
+                checkPstmt.setInt(1, studentId);
+                checkPstmt.setInt(2, courseId);
+                try (ResultSet rs = checkPstmt.executeQuery()) {
+                    if (rs.next()) return Outcome.ALREADY_ENROLLED.withOffering(offered);
+                }
+            }
+            if (!holdsPrerequisites(conn, studentId, courseId)) return Outcome.MISSING_PREREQUISITES.withOffering(offered);
+            insertEnrollment(conn, studentId, courseId);
+            return Outcome.ENROLLED.withOffering(offered);
+        }
+
+        if (!holdsPrerequisites(conn, studentId, courseId)) {
+            // failure path: report a missing row or a duplicate first, as check-then-act does
+            Outcome missing = missingStudentOrCourse(conn, studentId, courseId);
+            if (missing != null) return missing;
+            Outcome outcome = enrolledCourseIds(conn, studentId).contains(courseId) ? Outcome.ALREADY_ENROLLED : Outcome.MISSING_PREREQUISITES;
+            return outcome.withOffering(isOfferedToStudent(conn, studentId, courseId));
+        }
+        try {
+            insertEnrollment(conn, studentId, courseId);
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return Outcome.ALREADY_ENROLLED.withOffering(isOfferedToStudent(conn, studentId, courseId));
+            if (isForeignKeyViolation(e)) {
+                Outcome missing = missingStudentOrCourse(conn, studentId, courseId);
+                if (missing != null) return missing;
+            }
+            throw e;
+        }
+        // The offering check only decides the warning, so it runs after the write
+        return Outcome.ENROLLED.withOffering(isOfferedToStudent(conn, studentId, courseId));
+    }
+
+    static Outcome removeStudentFromCourse(Connection conn, int studentId, int courseId) throws SQLException {
+        if (!setBased) {
+            if (!JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_NOT_FOUND;
+            if (!ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+        }
+        String query = "DELETE FROM StudentCourses WHERE student_id = ? AND course_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, studentId);
+            pstmt.setInt(2, courseId);
+            if (pstmt.executeUpdate() > 0) {
+                MutationJournal.record(MutationJournal.Op.UNENROLL, studentId, courseId);
+                return Outcome.STUDENT_REMOVED_FROM_COURSE;
+            }
+        }
+        if (!setBased) return Outcome.ENROLLMENT_NOT_FOUND;
+        Outcome missing = missingStudentOrCourse(conn, studentId, courseId);
+        return missing != null ? missing : Outcome.ENROLLMENT_NOT_FOUND;
+    }
+
+    static Outcome removeCourseFromCollege(Connection conn, int collegeId, int courseId) throws SQLException {
+        if (!setBased) {
+            if (!ReferenceDataCache.collegeExists(conn, collegeId)) return Outcome.COLLEGE_NOT_FOUND;
+            if (!ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+        }
+        String query = "DELETE FROM CollegeCourses WHERE college_id = ? AND course_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, collegeId);
+            pstmt.setInt(2, courseId);
+            if (pstmt.executeUpdate() > 0) {
+                ReferenceDataCache.invalidateCollegeCourses(collegeId);
+                MutationJournal.record(MutationJournal.Op.REMOVE_COURSE_FROM_COLLEGE, collegeId, courseId);
+                return Outcome.COURSE_REMOVED_FROM_COLLEGE;
+            }
+        }
+        if (!setBased) return Outcome.ASSOCIATION_NOT_FOUND;
+        Outcome missing = missingCollegeOrCourse(conn, collegeId, courseId);
+        return missing != null ? missing : Outcome.ASSOCIATION_NOT_FOUND;
+    }
+
+    static Outcome addPrerequisite(Connection conn, int courseId, int prerequisiteId) throws SQLException {
+        if (!setBased) {
+            if (!ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+            if (!ReferenceDataCache.courseExists(conn, prerequisiteId)) return Outcome.COURSE_NOT_FOUND;
+        }
+        if (ReferenceDataCache.prerequisites(conn).wouldCreateCycle(courseId, prerequisiteId)) return Outcome.PREREQUISITE_CYCLE;
+        String query = "INSERT INTO CoursePrerequisites (course_id, prerequisite_id) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, courseId);
+            pstmt.setInt(2, prerequisiteId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            if (isDuplicateKey(e)) return Outcome.PREREQUISITE_EXISTS;
+            if (isForeignKeyViolation(e)) return Outcome.COURSE_NOT_FOUND;
+            throw e;
+        }
+        ReferenceDataCache.invalidatePrerequisites();
+        MutationJournal.record(MutationJournal.Op.ADD_PREREQUISITE, courseId, prerequisiteId);
+        return Outcome.PREREQUISITE_ADDED;
+    }
+
+    static Outcome removePrerequisite(Connection conn, int courseId, int prerequisiteId) throws SQLException {
+        String query = "DELETE FROM CoursePrerequisites WHERE course_id = ? AND prerequisite_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, courseId);
+            pstmt.setInt(2, prerequisiteId);
+            if (pstmt.executeUpdate() == 0) return Outcome.PREREQUISITE_NOT_FOUND;
+        }
+        ReferenceDataCache.invalidatePrerequisites();
+        MutationJournal.record(MutationJournal.Op.REMOVE_PREREQUISITE, courseId, prerequisiteId);
+        return Outcome.PREREQUISITE_REMOVED;
+    }
+
+    // newName empty and newAge 0 mean "leave unchanged"
+    static Outcome updateStudentDetails(Connection conn, int studentId, String newName, int newAge) throws SQLException {
+        if (!setBased && !JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return Outcome.STUDENT_NOT_FOUND;
+        if (newName.isEmpty() && newAge <= 0) return Outcome.NO_UPDATES;
+        ReportCounters.Row before = newAge > 0 ? ReportCounters.row(conn, studentId) : null;
+        if (!updateDetails(conn, "Student", "student_name", "student_age", "student_id", studentId, newName, newAge)) {
+            return Outcome.STUDENT_NOT_FOUND;
+        }
+        if (newAge > 0) ReportCounters.studentAgeChanged(before, newAge);
+        if (!newName.isEmpty()) NameSearchIndex.studentRenamed(studentId, newName);
+        MutationJournal.record(MutationJournal.Op.UPDATE_STUDENT, newName, studentId, Math.max(newAge, 0));
+        return Outcome.STUDENT_UPDATED;
+    }
+
+    // newName empty and newDuration 0 mean "leave unchanged"
+    static Outcome updateCourseDetails(Connection conn, int courseId, String newName, int newDuration) throws SQLException {
+        if (!setBased && !ReferenceDataCache.courseExists(conn, courseId)) return Outcome.COURSE_NOT_FOUND;
+        if (newName.isEmpty() && newDuration <= 0) return Outcome.NO_UPDATES;
+        if (!updateDetails(conn, "Courses", "course_name", "course_duration", "course_id", courseId, newName, newDuration)) {
+            return Outcome.COURSE_NOT_FOUND;
+        }
+        ReferenceDataCache.invalidateCourse(courseId);
+        MutationJournal.record(MutationJournal.Op.UPDATE_COURSE, newName, courseId, Math.max(newDuration, 0));
+        return Outcome.COURSE_UPDATED;
+    }
+
+    record Student(int id, String name, int age, Integer collegeId) {
+    }
+
+    // Students whose college choice is the given college, or null if there is no such college
+    static List<Student> studentsOfCollege(Connection conn, int collegeId) throws SQLException {
+        if (!ReferenceDataCache.collegeExists(conn, collegeId)) return null;
+        String query = "SELECT student_id, student_name, student_age, college_id_choice FROM Student WHERE college_id_choice = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, collegeId);
+            return readStudents(pstmt);
+        }
+    }
+
+    // Courses offered by the college, or null if there is no such college
+    static List<ReferenceDataCache.Course> coursesOfCollege(Connection conn, int collegeId) throws SQLException {
+        if (!ReferenceDataCache.collegeExists(conn, collegeId)) return null;
+        return ReferenceDataCache.coursesOfCollege(conn, collegeId);
+    }
+
+    // Courses the student is enrolled in, or null if there is no such student
+    static List<ReferenceDataCache.Course> enrolledCourses(Connection conn, int studentId) throws SQLException {
+        if (!JdbcDemo.idExists(conn, "Student", "student_id", studentId)) return null;
+        List<ReferenceDataCache.Course> courses = new ArrayList<>();
+        String query = "SELECT c.course_id, c.course_name, c.course_duration FROM StudentCourses sc JOIN Courses c ON sc.course_id = c.course_id WHERE sc.student_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, studentId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    courses.add(new ReferenceDataCache.Course(rs.getInt(1), rs.getString(2), rs.getInt(3)));
+                }
+            }
+        }
+        return courses;
+    }
+
+    // Every course the course requires, directly or indirectly, or null if there is no such course
+    static List<ReferenceDataCache.Course> prerequisitesOf(Connection conn, int courseId) throws SQLException {
+        if (!ReferenceDataCache.courseExists(conn, courseId)) return null;
+        List<ReferenceDataCache.Course> courses = new ArrayList<>();
+        for (int id : ReferenceDataCache.prerequisites(conn).prerequisites(courseId)) {
+            ReferenceDataCache.Course course = ReferenceDataCache.course(conn, id);
+            if (course != null) courses.add(course);
+        }
+        return courses;
+    }
+
+    // college id -> number of students who chose it
+    static Map<Integer, Integer> studentsPerCollege(Connection conn) throws SQLException {
+        Map<Integer, Integer> report = new LinkedHashMap<>();
+        String query = "SELECT college_id_choice, COUNT(*) AS num_students FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                report.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+        return report;
+    }
+
+    // college id -> average age of the students who chose it
+    static Map<Integer, Double> averageAgePerCollege(Connection conn) throws SQLException {
+        Map<Integer, Double> report = new LinkedHashMap<>();
+        String query = "SELECT college_id_choice, AVG(student_age) AS avg_age FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                report.put(rs.getInt(1), rs.getDouble(2));
+            }
+        }
+        return report;
+    }
+
+    // Students whose name contains the given text
+    static List<Student> searchStudentsByName(Connection conn, String name) throws SQLException {
+        return searchStudentsByName(conn, name, Integer.MAX_VALUE);
+    }
+
+    // Up to limit students whose name contains the given text, through the trigram index
+    // when it is enabled. % and _ match themselves on both paths.
+    static List<Student> searchStudentsByName(Connection conn, String name, int limit) throws SQLException {
+        if (NameSearchIndex.ENABLED) {
+            return studentsById(conn, NameSearchIndex.current(conn).search(name, limit));
+        }
+        String query = "SELECT student_id, student_name, student_age, college_id_choice FROM Student WHERE student_name LIKE ? ESCAPE '!'";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setString(1, "%" + likeLiteral(name) + "%");
+            pstmt.setMaxRows(limit);
+            return readStudents(pstmt);
+        }
+    }
+
+    // Up to limit students whose name starts with the given text
+    static List<Student> searchStudentsByNamePrefix(Connection conn, String prefix, int limit) throws SQLException {
+        if (NameSearchIndex.ENABLED) {
+            return studentsById(conn, NameSearchIndex.current(conn).searchPrefix(prefix, limit));
+        }
+        String query = "SELECT student_id, student_name, student_age, college_id_choice FROM Student WHERE student_name LIKE ? ESCAPE '!' ORDER BY student_id";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setString(1, likeLiteral(prefix) + "%");
+            pstmt.setMaxRows(limit);
+            return readStudents(pstmt);
+        }
+    }
+
+    // Text for a LIKE ... ESCAPE '!' pattern that matches it literally, as NameSearchIndex does
+    private static String likeLiteral(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    // Rows for the given student ids, in id order; ids without a row are skipped
+    private static List<Student> studentsById(Connection conn, int[] ids) throws SQLException {
+        List<Student> students = new ArrayList<>(ids.length);
+        final int chunk = 500;
+        for (int from = 0; from < ids.length; from += chunk) {
+            int n = Math.min(chunk, ids.length - from);
+            String query = "SELECT student_id, student_name, student_age, college_id_choice FROM Student WHERE student_id IN ("
+                    + "?, ".repeat(n - 1) + "?) ORDER BY student_id";
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                for (int i = 0; i < n; i++) {
+                    pstmt.setInt(i + 1, ids[from + i]);
+                }
+                students.addAll(readStudents(pstmt));
+            }
+        }
+        return students;
+    }
+
+    private static List<Student> readStudents(PreparedStatement pstmt) throws SQLException {
+        List<Student> students = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                students.add(new Student(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getObject(4, Integer.class)));
+            }
+        }
+        return students;
+    }
+
+    private static boolean updateDetails(Connection conn, String table, String nameColumn, String numberColumn,
+                                         String idColumn, int id, String newName, int newNumber) throws SQLException {
+        StringBuilder queryBuilder = new StringBuilder("UPDATE " + table + " SET ");
+        if (!newName.isEmpty()) queryBuilder.append(nameColumn).append(" = ?, ");
+        if (newNumber > 0) queryBuilder.append(numberColumn).append(" = ?, ");
+        queryBuilder.delete(queryBuilder.length() - 2, queryBuilder.length()); // Remove last comma
+        queryBuilder.append(" WHERE ").append(idColumn).append(" = ?");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(queryBuilder.toString())) {
+            int paramIndex = 1;
+            if (!newName.isEmpty()) pstmt.setString(paramIndex++, newName);
+            if (newNumber > 0) pstmt.setInt(paramIndex++, newNumber);
+            pstmt.setInt(paramIndex, id);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    // Whether the student holds every transitive prerequisite of the course. Costs a query only
+    // for courses that have prerequisites.
+    private static boolean holdsPrerequisites(Connection conn, int studentId, int courseId) throws SQLException {
+        if (!ENFORCE_PREREQUISITES) return true;
+        PrerequisiteGraph graph = ReferenceDataCache.prerequisites(conn);
+        return !graph.hasPrerequisites(courseId) || graph.missing(courseId, enrolledCourseIds(conn, studentId)).length == 0;
+    }
+
+    private static Set<Integer> enrolledCourseIds(Connection conn, int studentId) throws SQLException {
+        Set<Integer> courseIds = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT course_id FROM StudentCourses WHERE student_id = ?")) {
+            pstmt.setInt(1, studentId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    courseIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return courseIds;
+    }
+
+    private static void insertEnrollment(Connection conn, int studentId, int courseId) throws SQLException {
+        String query = "INSERT INTO StudentCourses (student_id, course_id) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, studentId);
+            pstmt.setInt(2, courseId);
+            pstmt.executeUpdate();
+        }
+        MutationJournal.record(MutationJournal.Op.ENROLL, studentId, courseId);
+    }
+
+    private static boolean isOfferedToStudent(Connection conn, int studentId, int courseId) throws SQLException {
+        String checkCollegeQuery = "SELECT 1 FROM Student s JOIN CollegeCourses cc ON s.college_id_choice = cc.college_id WHERE s.student_id = ? AND cc.course_id = ?";
+        try (PreparedStatement checkPstmt = conn.prepareStatement(checkCollegeQuery)) {
+            checkPstmt.setInt(1, studentId);
+            checkPstmt.setInt(2, courseId);
+            try (ResultSet rs = checkPstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean updateById(Connection conn, String query, int id) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, id);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    // Failure-path diagnostics: one query telling which referenced row is missing (null if both exist)
+    private static Outcome missingStudentOrCourse(Connection conn, int studentId, int courseId) throws SQLException {
+        return missing(conn, "SELECT (SELECT COUNT(*) FROM Student WHERE student_id = ?), (SELECT COUNT(*) FROM Courses WHERE course_id = ?)",
+                studentId, courseId, Outcome.STUDENT_NOT_FOUND, Outcome.COURSE_NOT_FOUND);
+    }
+
+    private static Outcome missingCollegeOrCourse(Connection conn, int collegeId, int courseId) throws SQLException {
+        return missing(conn, "SELECT (SELECT COUNT(*) FROM College WHERE college_id = ?), (SELECT COUNT(*) FROM Courses WHERE course_id = ?)",
+                collegeId, courseId, Outcome.COLLEGE_NOT_FOUND, Outcome.COURSE_NOT_FOUND);
+    }
+
+    private static Outcome missing(Connection conn, String query, int first, int second,
+                                   Outcome firstMissing, Outcome secondMissing) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, first);
+            pstmt.setInt(2, second);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                if (rs.getInt(1) == 0) return firstMissing;
+                if (rs.getInt(2) == 0) return secondMissing;
+                return null;
+            }
+        }
+    }
+
+    // MySQL reports SQLState 23000 for every integrity violation, so look at the vendor code too
+    static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
+    static boolean isForeignKeyViolation(SQLException e) {
+        return e.getErrorCode() == 1452 || e.getErrorCode() == 1451
+                || "23503".equals(e.getSQLState()) || "23506".equals(e.getSQLState());
+    }
+}
@@ -0,0 +1,429 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Synthetic data set at production scale, for sizing and for reproducing plans and contention
+// locally. Recreates the schema from init_db.sql (its CREATE statements, not the sample rows) and
+// fills every table: College, Courses, CollegeCourses, CoursePrerequisites, Student (with gpa)
+// and StudentCourses.
+//
+// Usage: java JdbcDemo generate
+//   -Dgen.students=1000000
+//   -Dgen.colleges=1000
+//   -Dgen.courses=5000
+//   -Dgen.collegeSkew=1.0             Zipf exponent of the college choice (0 = uniform; college 1 is
+//                                     the most popular, then 2, ...)
+//   -Dgen.courseSkew=0.8              Zipf exponent of course popularity, for offerings and enrollments
+//   -Dgen.noCollegeRatio=0.02         students without a college choice
+//   -Dgen.gpaNullRatio=0.1            students without a gpa; the others are normal around 3.0, in [0, 4]
+//   -Dgen.coursesPerCollege=20
+//   -Dgen.enrollmentsPerStudent=4     mean; each student gets 0 to twice as many distinct courses,
+//                                     most of them from the courses their college offers
+//   -Dgen.prerequisiteRatio=0.2       courses with prerequisites, 1 to gen.maxPrerequisites of them,
+//   -Dgen.maxPrerequisites=3          always lower-numbered courses, so the graph has no cycles
+//   -Dgen.seed=42                     the same seed and sizes give the same data
+//   -Dgen.threads=4                   parallel loaders for Student and StudentCourses (keep pool.maxSize >= this)
+//   -Dgen.chunkSize=20000             students per loader transaction
+//   -Dgen.rowsPerInsert=1000          rows per multi-row INSERT ... VALUES (...), (...)
+//   -Dgen.schema=true                 drop and recreate the tables first (false: append to empty tables)
+//
+// Every INSERT carries gen.rowsPerInsert rows, so the load costs one round trip per thousand
+// rows instead of one per row. The loader sessions switch off foreign key and unique checks
+// (MySQL FOREIGN_KEY_CHECKS / UNIQUE_CHECKS, H2 REFERENTIAL_INTEGRITY). The generator only
+// writes valid references and distinct keys, and the checks do not re-examine the loaded rows
+// when they are switched back on. Afterwards the tables are analyzed (MySQL) so that the
+// optimizer sees the new sizes.
+//
+// Enrollments are not checked against prerequisites, as for rows loaded by other means.
+final class DataGenerator {
+
+    static final int STUDENTS = Integer.getInteger("gen.students", 1_000_000);
+    static final int COLLEGES = Integer.getInteger("gen.colleges", 1000);
+    static final int COURSES = Integer.getInteger("gen.courses", 5000);
+    static final double COLLEGE_SKEW = Double.parseDouble(System.getProperty("gen.collegeSkew", "1.0"));
+    static final double COURSE_SKEW = Double.parseDouble(System.getProperty("gen.courseSkew", "0.8"));
+    static final double NO_COLLEGE_RATIO = Double.parseDouble(System.getProperty("gen.noCollegeRatio", "0.02"));
+    static final double GPA_NULL_RATIO = Double.parseDouble(System.getProperty("gen.gpaNullRatio", "0.1"));
+    static final int COURSES_PER_COLLEGE = Integer.getInteger("gen.coursesPerCollege", 20);
+    static final int ENROLLMENTS_PER_STUDENT = Integer.getInteger("gen.enrollmentsPerStudent", 4);
+    static final double PREREQUISITE_RATIO = Double.parseDouble(System.getProperty("gen.prerequisiteRatio", "0.2"));
+    static final int MAX_PREREQUISITES = Integer.getInteger("gen.maxPrerequisites", 3);
+    static final long SEED = Long.getLong("gen.seed", 42L);
+    static final int THREADS = Integer.getInteger("gen.threads", 4);
+    static final int CHUNK_SIZE = Integer.getInteger("gen.chunkSize", 20_000);
+    static final int ROWS_PER_INSERT = Integer.getInteger("gen.rowsPerInsert", 1000);
+    static final boolean SCHEMA = !"false".equals(System.getProperty("gen.schema"));
+
+    private static final String[] SYLLABLES = {"ra", "man", "a", "yu", "sh", "dit", "ya", "sar", "thak", "ash", "mi",
+            "ar", "jun", "ku", "nal", "pri", "ne", "ha", "vik", "ram", "an", "ja", "li", "ro", "hit", "de", "vi", "ka"};
+
+    // Ranks 1..n drawn with probability proportional to 1 / rank^skew
+    static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double skew) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int rank = 1; rank <= n; rank++) {
+                sum += 1 / Math.pow(rank, skew);
+                cdf[rank - 1] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int next(SplittableRandom random) {
+            int at = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(at >= 0 ? at + 1 : -at, cdf.length);
+        }
+    }
+
+    // Rows of one table sent as multi-row INSERTs of up to rowsPerInsert rows
+    private static final class MultiRowInsert implements AutoCloseable {
+        private final Connection conn;
+        private final String table;
+        private final String[] columns;
+        private final int[] types;
+        private final int rowsPerInsert;
+        private final Object[] values;
+        private PreparedStatement full; // prepared once for a full set of rows
+        private int buffered;
+        private long rows;
+
+        MultiRowInsert(Connection conn, String table, String[] columns, int[] types, int rowsPerInsert) {
+            this.conn = conn;
+            this.table = table;
+            this.columns = columns;
+            this.types = types;
+            this.rowsPerInsert = rowsPerInsert;
+            this.values = new Object[rowsPerInsert * columns.length];
+        }
+
+        void add(Object... row) throws SQLException {
+            System.arraycopy(row, 0, values, buffered * columns.length, columns.length);
+            if (++buffered == rowsPerInsert) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (buffered == 0) return;
+            if (buffered == rowsPerInsert) {
+                if (full == null) full = conn.prepareStatement(sql(rowsPerInsert));
+                execute(full);
+            } else {
+                try (PreparedStatement last = conn.prepareStatement(sql(buffered))) {
+                    execute(last);
+                }
+            }
+            rows += buffered;
+            buffered = 0;
+        }
+
+        private void execute(PreparedStatement pstmt) throws SQLException {
+            int n = buffered * columns.length;
+            for (int i = 0; i < n; i++) {
+                if (values[i] == null) pstmt.setNull(i + 1, types[i % columns.length]);
+                else pstmt.setObject(i + 1, values[i], types[i % columns.length]);
+            }
+            pstmt.executeUpdate();
+        }
+
+        private String sql(int rowCount) {
+            String tuple = "(" + "?, ".repeat(columns.length - 1) + "?)";
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                    .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+            for (int i = 0; i < rowCount; i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(tuple);
+            }
+            return sql.toString();
+        }
+
+        long rows() {
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (full != null) full.close();
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Zipf collegeChoice = new Zipf(COLLEGES, COLLEGE_SKEW);
+    private final Zipf coursePopularity = new Zipf(COURSES, COURSE_SKEW);
+    private final int[][] offered = new int[COLLEGES + 1][]; // college id -> course ids it offers
+    private final AtomicLong students = new AtomicLong();
+    private final AtomicLong enrollments = new AtomicLong();
+
+    private DataGenerator(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    // Entry point used by "java JdbcDemo generate"
+    static void run(ConnectionPool pool) throws SQLException, IOException {
+        System.out.printf("Generating %d students, %d colleges, %d courses (college skew %.2f, %d loader threads)%n",
+                STUDENTS, COLLEGES, COURSES, COLLEGE_SKEW, THREADS);
+        new DataGenerator(pool).generate();
+    }
+
+    private void generate() throws SQLException, IOException {
+        long start = System.nanoTime();
+        long referenceRows;
+        try (Connection conn = pool.borrow()) {
+            if (SCHEMA) {
+                createSchema(conn, Path.of("init_db.sql"));
+            }
+            referenceRows = loaded(conn, this::loadReferenceData);
+        }
+        System.out.printf("Reference data: %d rows in %.1fs%n", referenceRows, (System.nanoTime() - start) / 1e9);
+
+        loadStudents();
+
+        try (Connection conn = pool.borrow()) {
+            analyze(conn);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long rows = referenceRows + students.get() + enrollments.get();
+        System.out.printf("Generated %d students and %d enrollments, %d rows in all, in %.1fs (%.0f rows/s)%n",
+                students.get(), enrollments.get(), rows, seconds, rows / seconds);
+    }
+
+    // The DROP and CREATE statements of the schema script; its sample rows are left out
+    private static void createSchema(Connection conn, Path script) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (String line : Files.readAllLines(script)) {
+            int comment = line.indexOf("--");
+            sql.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : sql.toString().split(";")) {
+                String trimmed = statement.trim();
+                String verb = trimmed.split("\\s+", 2)[0].toUpperCase(Locale.ROOT);
+                if (verb.equals("DROP") || verb.equals("CREATE")) {
+                    stmt.execute(trimmed);
+                }
+            }
+        }
+    }
+
+    private interface Load {
+        long run(Connection conn) throws SQLException;
+    }
+
+    // Run a load in one transaction with constraint checks off on the session; returns its rows
+    private static long loaded(Connection conn, Load load) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        constraintChecks(conn, false);
+        try {
+            long rows = load.run(conn);
+            conn.commit();
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            constraintChecks(conn, true); // the connection goes back to the pool
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void constraintChecks(Connection conn, boolean on) throws SQLException {
+        String url = conn.getMetaData().getURL();
+        try (Statement stmt = conn.createStatement()) {
+            if (url.startsWith("jdbc:mysql:")) {
+                stmt.execute("SET FOREIGN_KEY_CHECKS = " + (on ? 1 : 0));
+                stmt.execute("SET UNIQUE_CHECKS = " + (on ? 1 : 0));
+            } else if (url.startsWith("jdbc:h2:")) {
+                stmt.execute("SET REFERENTIAL_INTEGRITY " + on);
+            }
+        }
+    }
+
+    private long loadReferenceData(Connection conn) throws SQLException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        long rows = 0;
+        try (MultiRowInsert college = new MultiRowInsert(conn, "College", new String[]{"college_id", "college_name", "college_fees"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.INTEGER}, ROWS_PER_INSERT)) {
+            for (int id = 1; id <= COLLEGES; id++) {
+                college.add(id, "College " + name(random), 100_000 + 10_000 * random.nextInt(300));
+            }
+            college.flush();
+            rows += college.rows();
+        }
+        try (MultiRowInsert course = new MultiRowInsert(conn, "Courses", new String[]{"course_id", "course_name", "course_duration"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.INTEGER}, ROWS_PER_INSERT)) {
+            for (int id = 1; id <= COURSES; id++) {
+                course.add(id, name(random).toUpperCase(Locale.ROOT) + id, 1 + random.nextInt(5));
+            }
+            course.flush();
+            rows += course.rows();
+        }
+        try (MultiRowInsert offering = new MultiRowInsert(conn, "CollegeCourses", new String[]{"college_id", "course_id"},
+                new int[]{Types.INTEGER, Types.INTEGER}, ROWS_PER_INSERT)) {
+            for (int collegeId = 1; collegeId <= COLLEGES; collegeId++) {
+                offered[collegeId] = distinctCourses(random, Math.min(COURSES_PER_COLLEGE, COURSES));
+                for (int courseId : offered[collegeId]) {
+                    offering.add(collegeId, courseId);
+                }
+            }
+            offering.flush();
+            rows += offering.rows();
+        }
+        try (MultiRowInsert prerequisite = new MultiRowInsert(conn, "CoursePrerequisites", new String[]{"course_id", "prerequisite_id"},
+                new int[]{Types.INTEGER, Types.INTEGER}, ROWS_PER_INSERT)) {
+            int[] chosen = new int[MAX_PREREQUISITES];
+            for (int courseId = 2; courseId <= COURSES; courseId++) {
+                if (random.nextDouble() >= PREREQUISITE_RATIO) continue;
+                int window = Math.min(courseId - 1, 50); // nearby courses, like a curriculum
+                int n = Math.min(1 + random.nextInt(Math.max(1, MAX_PREREQUISITES)), window);
+                for (int k = 0; k < n; k++) {
+                    int candidate;
+                    do {
+                        candidate = courseId - 1 - random.nextInt(window);
+                    } while (contains(chosen, k, candidate));
+                    chosen[k] = candidate;
+                    prerequisite.add(courseId, candidate);
+                }
+            }
+            prerequisite.flush();
+            rows += prerequisite.rows();
+        }
+        return rows;
+    }
+
+    // Student and StudentCourses, one chunk of student ids per transaction, on gen.threads connections
+    private void loadStudents() throws SQLException {
+        int chunks = (STUDENTS + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, THREADS), r -> {
+            Thread t = new Thread(r, "data-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int fromId = 1 + chunk * CHUNK_SIZE;
+                int toId = Math.min(STUDENTS, fromId + CHUNK_SIZE - 1);
+                long seed = SEED * 31 + chunk;
+                futures.add(executor.submit(() -> {
+                    try (Connection conn = pool.borrow()) {
+                        return loaded(conn, c -> loadStudents(c, fromId, toId, new SplittableRandom(seed)));
+                    }
+                }));
+            }
+            for (Future<Long> future : futures) {
+                while (true) {
+                    try {
+                        future.get(5, TimeUnit.SECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        System.out.printf("  %d of %d students, %d enrollments, %.0f rows/s%n", students.get(), STUDENTS,
+                                enrollments.get(), (students.get() + enrollments.get()) / seconds);
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("Loader failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long loadStudents(Connection conn, int fromId, int toId, SplittableRandom random) throws SQLException {
+        int[] courses = new int[2 * ENROLLMENTS_PER_STUDENT];
+        try (MultiRowInsert student = new MultiRowInsert(conn, "Student",
+                new String[]{"student_id", "student_name", "student_age", "college_id_choice", "gpa"},
+                new int[]{Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.FLOAT}, ROWS_PER_INSERT);
+             MultiRowInsert enrollment = new MultiRowInsert(conn, "StudentCourses", new String[]{"student_id", "course_id"},
+                     new int[]{Types.INTEGER, Types.INTEGER}, ROWS_PER_INSERT)) {
+            for (int id = fromId; id <= toId; id++) {
+                Integer college = random.nextDouble() < NO_COLLEGE_RATIO ? null : collegeChoice.next(random);
+                Float gpa = random.nextDouble() < GPA_NULL_RATIO ? null
+                        : (float) (Math.round(Math.max(0, Math.min(4, 3.0 + 0.5 * random.nextGaussian())) * 100) / 100.0);
+                int age = 17 + (int) Math.min(18, Math.abs(random.nextGaussian()) * 3);
+                student.add(id, name(random), age, college, gpa);
+
+                int n = Math.min(random.nextInt(courses.length + 1), COURSES);
+                int k = 0;
+                while (k < n) {
+                    // mostly courses the student's college offers, otherwise any course by popularity
+                    int[] offers = college != null ? offered[college] : null;
+                    int courseId = offers != null && offers.length > 0 && random.nextDouble() < 0.8
+                            ? offers[random.nextInt(offers.length)] : coursePopularity.next(random);
+                    if (contains(courses, k, courseId)) continue;
+                    courses[k++] = courseId;
+                    enrollment.add(id, courseId);
+                }
+                students.incrementAndGet();
+            }
+            student.flush();
+            enrollment.flush();
+            enrollments.addAndGet(enrollment.rows());
+            return student.rows() + enrollment.rows();
+        }
+    }
+
+    // Fresh optimizer statistics for the loaded tables
+    private static void analyze(Connection conn) throws SQLException {
+        if (!conn.getMetaData().getURL().startsWith("jdbc:mysql:")) return;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE TABLE College, Courses, CollegeCourses, CoursePrerequisites, Student, StudentCourses");
+        }
+    }
+
+    // n distinct course ids by popularity, or uniformly when the catalog is too small to sample by rejection
+    private int[] distinctCourses(SplittableRandom random, int n) {
+        int[] chosen = new int[n];
+        for (int k = 0; k < n; k++) {
+            int courseId;
+            do {
+                courseId = n * 2 > COURSES ? 1 + random.nextInt(COURSES) : coursePopularity.next(random);
+            } while (contains(chosen, k, courseId));
+            chosen[k] = courseId;
+        }
+        return chosen;
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private static String name(SplittableRandom random) {
+        StringBuilder name = new StringBuilder();
+        for (int k = 2 + random.nextInt(3); k > 0; k--) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
@@ -0,0 +1,326 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write-behind path for enrollStudentInCourse, for bursts of enrollments from many clients.
+// Callers put requests on a bounded queue and get a future back. A single writer thread drains
+// the queue in batches and handles each batch with a fixed number of statements: set-based
+// lookups of the students, courses, existing enrollments and offerings involved (and of the
+// students' courses when prerequisites are to be checked), one batched INSERT (sent as a
+// multi-row insert with rewriteBatchedStatements=true) and one commit.
+// A future completes only once its batch is committed, with the Outcome enrollStudentInCourse
+// would have returned.
+//   -Denroll.async=true           HttpService enrolls through the queue
+//   -Denroll.queueCapacity=10000  a full queue blocks submitters (backpressure)
+//   -Denroll.batchSize=500
+//   -Denroll.lingerMs=2           after the first request of a batch, wait this long for more
+// The writer handles requests in arrival order, so requests for the same student never overtake
+// each other; repeating a pair already in the batch gives ALREADY_ENROLLED, as it would in sequence.
+// A batch that loses a lock conflict is retried (TransactionRetry). If it still fails as a whole
+// (a concurrent delete, a duplicate from another client), it is replayed one request per
+// transaction through DataAccess, so a bad request fails only its own future.
+// Flush latency is recorded as the "Enrollment flush" operation and end-to-end latency as
+// "Enrollment (queued)" in Instrumentation.
+class EnrollmentQueue implements AutoCloseable {
+
+    static final boolean ENABLED = Boolean.getBoolean("enroll.async");
+    static final int QUEUE_CAPACITY = Integer.getInteger("enroll.queueCapacity", 10_000);
+    static final int BATCH_SIZE = Integer.getInteger("enroll.batchSize", 500);
+    static final long LINGER_MS = Long.getLong("enroll.lingerMs", 2L);
+
+    private record Request(int studentId, int courseId, long submittedAt, CompletableFuture<DataAccess.Outcome> result) {
+    }
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Request> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile int maxDepth;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder replayedBatches = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    EnrollmentQueue(ConnectionPool pool, int capacity, int batchSize, long lingerMillis) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = lingerMillis * 1_000_000L;
+        this.writer = new Thread(this::drain, "enrollment-writer");
+        writer.setDaemon(true);
+    }
+
+    static EnrollmentQueue fromProperties(ConnectionPool pool) {
+        return new EnrollmentQueue(pool, QUEUE_CAPACITY, BATCH_SIZE, LINGER_MS);
+    }
+
+    EnrollmentQueue start() {
+        writer.start();
+        return this;
+    }
+
+    // Queue an enrollment; blocks while the queue is full
+    CompletableFuture<DataAccess.Outcome> submit(int studentId, int courseId) {
+        CompletableFuture<DataAccess.Outcome> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new IllegalStateException("Enrollment queue is closed"));
+            return result;
+        }
+        try {
+            queue.put(new Request(studentId, courseId, System.nanoTime(), result));
+            submitted.increment();
+            int depth = queue.size();
+            if (depth > maxDepth) maxDepth = depth; // racy, but only a statistic
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    // Queue an enrollment and wait until it is committed
+    DataAccess.Outcome enroll(int studentId, int courseId) throws SQLException {
+        try {
+            return submit(studentId, courseId).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for enrollment", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("Enrollment failed", e.getCause());
+        }
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long lingerUntil = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    long remaining = lingerUntil - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                closed = true; // finish what was taken, then stop
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Request> batch) {
+        long start = System.nanoTime();
+        try (Connection conn = Instrumentation.wrap(pool.borrow())) {
+            conn.setAutoCommit(false);
+            DataAccess.Outcome[] outcomes;
+            try {
+                outcomes = TransactionRetry.DEFAULT.transaction(conn, c -> enrollAll(c, batch));
+            } catch (SQLException | RuntimeException e) {
+                replayedBatches.increment();
+                replay(conn, batch);
+                return;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                complete(batch.get(i), outcomes[i]);
+            }
+        } catch (SQLException e) {
+            // no connection, or it broke: fail whatever has not completed yet
+            for (Request request : batch) {
+                fail(request, e);
+            }
+        } finally {
+            flushes.increment();
+            flushed.add(batch.size());
+            Instrumentation.recordOperation("Enrollment flush", System.nanoTime() - start);
+        }
+    }
+
+    // The batch as one transaction; outcomes are in batch order
+    private static DataAccess.Outcome[] enrollAll(Connection conn, List<Request> batch) throws SQLException {
+        Set<Integer> studentIds = new LinkedHashSet<>();
+        Set<Integer> courseIds = new LinkedHashSet<>();
+        for (Request request : batch) {
+            studentIds.add(request.studentId());
+            courseIds.add(request.courseId());
+        }
+
+        Map<Integer, Integer> collegeOf = new HashMap<>(); // student id -> college choice (null if none)
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT student_id, college_id_choice FROM Student WHERE student_id IN ("
+                + placeholders(studentIds.size()) + ")")) {
+            bind(pstmt, 1, studentIds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) collegeOf.put(rs.getInt(1), rs.getObject(2, Integer.class));
+            }
+        }
+        Set<Integer> courses = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT course_id FROM Courses WHERE course_id IN ("
+                + placeholders(courseIds.size()) + ")")) {
+            bind(pstmt, 1, courseIds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) courses.add(rs.getInt(1));
+            }
+        }
+        Set<Long> enrolled = pairs(conn, "SELECT student_id, course_id FROM StudentCourses WHERE student_id IN ("
+                + placeholders(studentIds.size()) + ") AND course_id IN (" + placeholders(courseIds.size()) + ")", studentIds, courseIds);
+        Set<Long> offered = pairs(conn, "SELECT college_id, course_id FROM CollegeCourses WHERE course_id IN ("
+                + placeholders(courseIds.size()) + ")", courseIds);
+
+        // Everything the students of the batch hold, for the courses that have prerequisites
+        PrerequisiteGraph graph = DataAccess.ENFORCE_PREREQUISITES ? ReferenceDataCache.prerequisites(conn) : null;
+        Set<Integer> needHeld = new LinkedHashSet<>();
+        for (Request request : batch) {
+            if (graph != null && graph.hasPrerequisites(request.courseId())) needHeld.add(request.studentId());
+        }
+        Map<Integer, Set<Integer>> held = new HashMap<>();
+        if (!needHeld.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT student_id, course_id FROM StudentCourses WHERE student_id IN ("
+                    + placeholders(needHeld.size()) + ")")) {
+                bind(pstmt, 1, needHeld);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) held.computeIfAbsent(rs.getInt(1), k -> new HashSet<>()).add(rs.getInt(2));
+                }
+            }
+        }
+
+        DataAccess.Outcome[] outcomes = new DataAccess.Outcome[batch.size()];
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO StudentCourses (student_id, course_id) VALUES (?, ?)")) {
+            int inserts = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                Request request = batch.get(i);
+                if (!collegeOf.containsKey(request.studentId())) {
+                    outcomes[i] = DataAccess.Outcome.STUDENT_NOT_FOUND;
+                } else if (!courses.contains(request.courseId())) {
+                    outcomes[i] = DataAccess.Outcome.COURSE_NOT_FOUND;
+                } else if (enrolled.contains(pair(request.studentId(), request.courseId()))) {
+                    outcomes[i] = DataAccess.Outcome.ALREADY_ENROLLED.withOffering(isOffered(collegeOf, offered, request));
+                } else if (graph != null && graph.hasPrerequisites(request.courseId())
+                        && graph.missing(request.courseId(), held.getOrDefault(request.studentId(), Set.of())).length > 0) {
+                    outcomes[i] = DataAccess.Outcome.MISSING_PREREQUISITES.withOffering(isOffered(collegeOf, offered, request));
+                } else {
+                    // later requests of the batch see this one as done
+                    enrolled.add(pair(request.studentId(), request.courseId()));
+                    held.computeIfAbsent(request.studentId(), k -> new HashSet<>()).add(request.courseId());
+                    insert.setInt(1, request.studentId());
+                    insert.setInt(2, request.courseId());
+                    insert.addBatch();
+                    inserts++;
+                    outcomes[i] = DataAccess.Outcome.ENROLLED.withOffering(isOffered(collegeOf, offered, request));
+                }
+            }
+            if (inserts > 0) {
+                insert.executeBatch();
+            }
+        }
+        return outcomes;
+    }
+
+    // One request per transaction, in order, after the batch as a whole failed
+    private void replay(Connection conn, List<Request> batch) {
+        for (Request request : batch) {
+            try {
+                complete(request, TransactionRetry.DEFAULT.transaction(conn,
+                        c -> DataAccess.enrollStudentInCourse(c, request.studentId(), request.courseId())));
+            } catch (SQLException | RuntimeException e) {
+                fail(request, e);
+            }
+        }
+    }
+
+    private static Set<Long> pairs(Connection conn, String query, Set<Integer> first, Set<Integer> second) throws SQLException {
+        Set<Long> pairs = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            bind(pstmt, bind(pstmt, 1, first), second);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) pairs.add(pair(rs.getInt(1), rs.getInt(2)));
+            }
+        }
+        return pairs;
+    }
+
+    private static Set<Long> pairs(Connection conn, String query, Set<Integer> ids) throws SQLException {
+        return pairs(conn, query, ids, Set.of());
+    }
+
+    private static boolean isOffered(Map<Integer, Integer> collegeOf, Set<Long> offered, Request request) {
+        Integer college = collegeOf.get(request.studentId());
+        return college != null && offered.contains(pair(college, request.courseId()));
+    }
+
+    private static long pair(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+
+    private static String placeholders(int n) {
+        return "?, ".repeat(n - 1) + "?";
+    }
+
+    // Bind ids from the given parameter index on; returns the next free index
+    private static int bind(PreparedStatement pstmt, int index, Set<Integer> ids) throws SQLException {
+        for (int id : ids) {
+            pstmt.setInt(index++, id);
+        }
+        return index;
+    }
+
+    private void complete(Request request, DataAccess.Outcome outcome) {
+        Instrumentation.recordOperation("Enrollment (queued)", System.nanoTime() - request.submittedAt());
+        request.result().complete(outcome);
+    }
+
+    private void fail(Request request, Exception e) {
+        if (request.result().completeExceptionally(e)) {
+            failed.increment();
+        }
+    }
+
+    String stats() {
+        long batches = flushes.sum();
+        return "Enrollment queue [depth=" + queue.size() + ", maxDepth=" + maxDepth + ", submitted=" + submitted.sum()
+                + ", flushes=" + batches + ", avgBatch=" + (batches == 0 ? 0 : flushed.sum() / batches)
+                + ", replayedBatches=" + replayedBatches.sum() + ", failed=" + failed.sum() + "]";
+    }
+
+    // Stop accepting requests, flush what is queued and stop the writer
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // put() calls that raced with close
+        for (Request request; (request = queue.poll()) != null; ) {
+            fail(request, new IllegalStateException("Enrollment queue is closed"));
+        }
+    }
+}
@@ -0,0 +1,548 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Embedded HTTP/JSON front end for the DataAccess operations (JDK HttpServer, no dependencies).
+// Every request runs on its own thread with its own pooled connection and transaction:
+// committed when the operation succeeds, rolled back when it is rejected or fails, and run
+// again when it loses a deadlock or lock wait timeout (TransactionRetry).
+// Requests run on virtual threads when the JDK has them (21+), otherwise on a cached pool;
+// either way concurrency against the database is bounded by pool.maxSize.
+// With -Denroll.async=true, enrollments go through an EnrollmentQueue instead: the request
+// waits, without holding a connection, until the batch containing it is committed.
+//
+// Usage: java JdbcDemo serve [port]     (default 8080)
+// Parameters come from the query string and/or a flat JSON object body, e.g.
+//   POST /students {"id": 9, "name": "Riya", "age": 19, "collegeId": 2}
+//   GET  /students?name=ya&limit=20      GET /reports/students-per-college
+//   GET  /students/details?ids=1,2,3     (BatchLookup: one entry per id, null if not found)
+class HttpService {
+
+    static final int DEFAULT_PORT = 8080;
+
+    // 400 for missing or malformed parameters
+    static class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequest(String message) {
+            super(message);
+        }
+    }
+
+    static final class Request {
+        final List<Integer> ids = new ArrayList<>(); // numeric path segments, in order
+        final Map<String, String> params = new HashMap<>();
+
+        int id(int i) {
+            return ids.get(i);
+        }
+
+        String text(String name, String fallback) {
+            String value = params.get(name);
+            return value == null ? fallback : value;
+        }
+
+        int number(String name) {
+            String value = params.get(name);
+            if (value == null) throw new BadRequest("Missing parameter: " + name);
+            return parse(name, value);
+        }
+
+        int number(String name, int fallback) {
+            String value = params.get(name);
+            return value == null ? fallback : parse(name, value);
+        }
+
+        // A comma separated list of numbers, e.g. ids=1,2,3
+        List<Integer> numbers(String name) {
+            String value = params.get(name);
+            if (value == null) throw new BadRequest("Missing parameter: " + name);
+            List<Integer> numbers = new ArrayList<>();
+            for (String item : value.split(",")) {
+                if (!item.isBlank()) numbers.add(parse(name, item.trim()));
+            }
+            return numbers;
+        }
+
+        private static int parse(String name, String value) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new BadRequest("Not a number: " + name + "=" + value);
+            }
+        }
+    }
+
+    record Response(int status, Object body) {
+    }
+
+    interface Handler {
+        Response handle(Connection conn, Request request) throws SQLException;
+    }
+
+    // A route is a method plus a path pattern in which "#" matches a numeric segment.
+    // Routes that are not transactional get no connection (null) and manage their own writes.
+    private record Route(String method, String[] pattern, String name, Handler handler, boolean transactional) {
+    }
+
+    private final List<Route> routes = new ArrayList<>();
+    private final ConnectionPool pool;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final EnrollmentQueue enrollments;
+
+    HttpService(ConnectionPool pool, int port) throws IOException {
+        this.pool = pool;
+        enrollments = EnrollmentQueue.ENABLED ? EnrollmentQueue.fromProperties(pool).start() : null;
+        registerRoutes();
+        executor = requestExecutor();
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::serve);
+        server.setExecutor(executor);
+    }
+
+    // Serve until the JVM shuts down
+    static void run(ConnectionPool pool, int port) throws IOException {
+        if (ReportCounters.ENABLED) {
+            // the counters stage one connection's transaction, not many concurrent ones
+            System.out.println("reports.incremental cannot be combined with serve mode");
+            return;
+        }
+        if (MutationJournal.ENABLED) {
+            // the journal stages one connection's transaction too
+            System.out.println("journal.dir cannot be combined with serve mode");
+            return;
+        }
+        if (ShardedDataAccess.ENABLED) {
+            // the handlers write Student and StudentCourses through the single pool, not the shards
+            System.out.println("shard.urls cannot be combined with serve mode");
+            return;
+        }
+        if (NameSearchIndex.ENABLED) {
+            // the index applies writes as they happen, so other requests would see uncommitted names
+            System.out.println("search.index cannot be combined with serve mode");
+            return;
+        }
+        HttpService service = new HttpService(pool, port).start();
+        System.out.println("Serving on port " + service.port() + " (" + executorKind() + " threads)");
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            service.stop();
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    HttpService start() {
+        server.start();
+        return this;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(1);
+        executor.shutdown();
+        if (enrollments != null) {
+            enrollments.close();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when available, looked up reflectively so the
+    // code still compiles and runs on JDK 17
+    private static ExecutorService requestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "http-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    static String executorKind() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return "virtual";
+        } catch (NoSuchMethodException e) {
+            return "platform";
+        }
+    }
+
+    private void route(String method, String path, String name, Handler handler) {
+        routes.add(new Route(method, path.substring(1).split("/"), name, handler, true));
+    }
+
+    private void routeWithoutTransaction(String method, String path, String name, Handler handler) {
+        routes.add(new Route(method, path.substring(1).split("/"), name, handler, false));
+    }
+
+    private static Response outcome(DataAccess.Outcome outcome) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", outcome.success);
+        body.put("outcome", outcome.name());
+        body.put("message", outcome.message);
+        return new Response(statusOf(outcome), body);
+    }
+
+    private static int statusOf(DataAccess.Outcome outcome) {
+        if (outcome.success) return 200;
+        return switch (outcome) {
+            case STUDENT_EXISTS, COLLEGE_EXISTS, COURSE_EXISTS, COURSE_ALREADY_IN_COLLEGE, ALREADY_ENROLLED,
+                 ALREADY_ENROLLED_NOT_OFFERED, PREREQUISITE_EXISTS, PREREQUISITE_CYCLE, MISSING_PREREQUISITES,
+                 MISSING_PREREQUISITES_NOT_OFFERED -> 409;
+            case INVALID_COLLEGE, NO_UPDATES -> 400;
+            default -> 404;
+        };
+    }
+
+    // null from a lookup means the parent row does not exist
+    private static Response found(Object rows, String missing) {
+        return rows == null ? new Response(404, Map.of("message", missing)) : new Response(200, rows);
+    }
+
+    private void registerRoutes() {
+        route("POST", "/students", "addStudent", (conn, r) -> outcome(DataAccess.addStudent(conn,
+                r.number("id"), r.text("name", ""), r.number("age"), r.number("collegeId", 0))));
+        route("GET", "/students", "listStudents", (conn, r) -> {
+            if (r.params.containsKey("name")) {
+                return new Response(200, DataAccess.searchStudentsByName(conn, r.text("name", ""), r.number("limit", 100)));
+            }
+            List<Map<String, Object>> page = new ArrayList<>();
+            TableListing.page(conn, TableListing.Table.STUDENT, r.number("after", 0), r.number("limit", 50), rs -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", rs.getInt("student_id"));
+                row.put("name", rs.getString("student_name"));
+                row.put("age", rs.getInt("student_age"));
+                row.put("collegeId", rs.getObject("college_id_choice", Integer.class));
+                page.add(row);
+            });
+            return new Response(200, page);
+        });
+        route("PUT", "/students/#", "updateStudentDetails", (conn, r) -> outcome(DataAccess.updateStudentDetails(conn,
+                r.id(0), r.text("name", ""), r.number("age", 0))));
+        route("DELETE", "/students/#", "deleteStudent", (conn, r) -> outcome(DataAccess.deleteStudent(conn, r.id(0))));
+        route("PUT", "/students/#/college", "updateCollegeChoice", (conn, r) -> outcome(DataAccess.updateCollegeChoice(conn,
+                r.id(0), r.number("collegeId"))));
+        route("DELETE", "/students/#/college", "deleteStudentFromCollege", (conn, r) ->
+                outcome(DataAccess.deleteStudentFromCollege(conn, r.id(0))));
+        route("GET", "/students/details", "studentDetails", (conn, r) ->
+                new Response(200, BatchLookup.students(conn, r.numbers("ids"))));
+        route("GET", "/students/#/courses", "enrolledCourses", (conn, r) ->
+                found(DataAccess.enrolledCourses(conn, r.id(0)), "Student not found."));
+        if (enrollments != null) {
+            routeWithoutTransaction("POST", "/students/#/courses", "enrollStudentInCourse", (conn, r) ->
+                    outcome(enrollments.enroll(r.id(0), r.number("courseId"))));
+        } else {
+            route("POST", "/students/#/courses", "enrollStudentInCourse", (conn, r) -> outcome(DataAccess.enrollStudentInCourse(conn,
+                    r.id(0), r.number("courseId"))));
+        }
+        route("DELETE", "/students/#/courses/#", "removeStudentFromCourse", (conn, r) ->
+                outcome(DataAccess.removeStudentFromCourse(conn, r.id(0), r.id(1))));
+
+        route("POST", "/colleges", "addCollege", (conn, r) -> outcome(DataAccess.addCollege(conn,
+                r.number("id"), r.text("name", ""), r.number("fees"))));
+        route("DELETE", "/colleges/#", "deleteCollege", (conn, r) -> outcome(DataAccess.deleteCollege(conn, r.id(0))));
+        route("PUT", "/colleges/#/fee", "updateCollegeFee", (conn, r) -> outcome(DataAccess.updateCollegeFee(conn,
+                r.id(0), r.number("fees"))));
+        route("GET", "/colleges/students", "studentsOfColleges", (conn, r) ->
+                new Response(200, BatchLookup.studentsOfColleges(conn, r.numbers("ids"))));
+        route("GET", "/colleges/#/students", "studentsOfCollege", (conn, r) ->
+                found(DataAccess.studentsOfCollege(conn, r.id(0)), "College not found."));
+        route("GET", "/colleges/#/courses", "coursesOfCollege", (conn, r) ->
+                found(DataAccess.coursesOfCollege(conn, r.id(0)), "College not found."));
+        route("POST", "/colleges/#/courses", "addCourseToCollege", (conn, r) -> outcome(DataAccess.addCourseToCollege(conn,
+                r.id(0), r.number("courseId"))));
+        route("DELETE", "/colleges/#/courses/#", "removeCourseFromCollege", (conn, r) ->
+                outcome(DataAccess.removeCourseFromCollege(conn, r.id(0), r.id(1))));
+
+        route("POST", "/courses", "addCourse", (conn, r) -> outcome(DataAccess.addCourse(conn,
+                r.number("id"), r.text("name", ""), r.number("duration"))));
+        route("PUT", "/courses/#", "updateCourseDetails", (conn, r) -> outcome(DataAccess.updateCourseDetails(conn,
+                r.id(0), r.text("name", ""), r.number("duration", 0))));
+        route("DELETE", "/courses/#", "deleteCourse", (conn, r) -> outcome(DataAccess.deleteCourse(conn, r.id(0))));
+        route("GET", "/courses/#/prerequisites", "prerequisitesOf", (conn, r) ->
+                found(DataAccess.prerequisitesOf(conn, r.id(0)), "Course not found."));
+        route("POST", "/courses/#/prerequisites", "addPrerequisite", (conn, r) -> outcome(DataAccess.addPrerequisite(conn,
+                r.id(0), r.number("prerequisiteId"))));
+        route("DELETE", "/courses/#/prerequisites/#", "removePrerequisite", (conn, r) ->
+                outcome(DataAccess.removePrerequisite(conn, r.id(0), r.id(1))));
+
+        route("GET", "/reports/students-per-college", "studentsPerCollege", (conn, r) ->
+                new Response(200, DataAccess.studentsPerCollege(conn)));
+        route("GET", "/reports/average-age", "averageAgePerCollege", (conn, r) ->
+                new Response(200, DataAccess.averageAgePerCollege(conn)));
+        route("GET", "/stats", "stats", (conn, r) -> {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("report", Instrumentation.report());
+            body.put("retry", TransactionRetry.DEFAULT.stats());
+            if (enrollments != null) body.put("enrollmentQueue", enrollments.stats());
+            return new Response(200, body);
+        });
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String name = "unrouted";
+        Response response;
+        try {
+            Request request = new Request();
+            Route route = match(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), request);
+            if (route == null) {
+                response = new Response(404, Map.of("message", "No such endpoint"));
+            } else {
+                name = route.name();
+                parseQuery(exchange.getRequestURI().getRawQuery(), request.params);
+                parseBody(exchange.getRequestBody(), request.params);
+                response = execute(route, request);
+            }
+        } catch (BadRequest e) {
+            response = new Response(400, Map.of("message", e.getMessage()));
+        } catch (ConnectionPool.BorrowTimeoutException e) {
+            // the service is saturated
+            response = new Response(503, Map.of("message", String.valueOf(e.getMessage())));
+        } catch (SQLException | RuntimeException e) {
+            response = new Response(500, Map.of("message", String.valueOf(e.getMessage())));
+        }
+
+        byte[] body = Json.write(response.body()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        Instrumentation.recordOperation("HTTP " + name, System.nanoTime() - start);
+    }
+
+    // One pooled connection and one transaction per (transactional) request
+    private Response execute(Route route, Request request) throws SQLException {
+        if (!route.transactional()) {
+            return route.handler().handle(null, request);
+        }
+        try (Connection conn = Instrumentation.wrap(pool.borrow())) {
+            conn.setAutoCommit(false);
+            return TransactionRetry.DEFAULT.transaction(conn, c -> route.handler().handle(c, request),
+                    response -> response.status() < 400);
+        }
+    }
+
+    private Route match(String method, String path, Request request) {
+        String[] segments = (path.endsWith("/") && path.length() > 1 ? path.substring(0, path.length() - 1) : path)
+                .substring(1).split("/");
+        candidates:
+        for (Route route : routes) {
+            if (!route.method().equals(method) || route.pattern().length != segments.length) continue;
+            request.ids.clear();
+            for (int i = 0; i < segments.length; i++) {
+                if (route.pattern()[i].equals("#")) {
+                    try {
+                        request.ids.add(Integer.parseInt(segments[i]));
+                    } catch (NumberFormatException e) {
+                        continue candidates;
+                    }
+                } else if (!route.pattern()[i].equals(segments[i])) {
+                    continue candidates;
+                }
+            }
+            return route;
+        }
+        return null;
+    }
+
+    private static void parseQuery(String query, Map<String, String> params) {
+        if (query == null || query.isEmpty()) return;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+    }
+
+    private static void parseBody(InputStream in, Map<String, String> params) throws IOException {
+        String body = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (!body.isEmpty()) {
+            params.putAll(Json.readFlatObject(body));
+        }
+    }
+
+    // Minimal JSON: writes maps, collections, records, strings, numbers, booleans and null;
+    // reads a flat object whose values are strings, numbers, booleans or null
+    static final class Json {
+
+        static String write(Object value) {
+            StringBuilder out = new StringBuilder();
+            write(value, out);
+            return out.toString();
+        }
+
+        private static void write(Object value, StringBuilder out) {
+            if (value == null) {
+                out.append("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                out.append(value);
+            } else if (value instanceof Map<?, ?> map) {
+                out.append('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> e : map.entrySet()) {
+                    if (!first) out.append(',');
+                    first = false;
+                    string(String.valueOf(e.getKey()), out);
+                    out.append(':');
+                    write(e.getValue(), out);
+                }
+                out.append('}');
+            } else if (value instanceof Collection<?> list) {
+                out.append('[');
+                boolean first = true;
+                for (Object item : list) {
+                    if (!first) out.append(',');
+                    first = false;
+                    write(item, out);
+                }
+                out.append(']');
+            } else if (value instanceof Record record) {
+                Map<String, Object> fields = new LinkedHashMap<>();
+                for (RecordComponent component : record.getClass().getRecordComponents()) {
+                    try {
+                        Method accessor = component.getAccessor();
+                        accessor.setAccessible(true);
+                        fields.put(component.getName(), accessor.invoke(record));
+                    } catch (ReflectiveOperationException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                write(fields, out);
+            } else {
+                string(value.toString(), out);
+            }
+        }
+
+        private static void string(String s, StringBuilder out) {
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                    }
+                }
+            }
+            out.append('"');
+        }
+
+        static Map<String, String> readFlatObject(String json) {
+            Map<String, String> values = new HashMap<>();
+            int[] pos = {0};
+            expect(json, pos, '{');
+            skipSpace(json, pos);
+            if (peek(json, pos) == '}') return values;
+            while (true) {
+                skipSpace(json, pos);
+                String key = readString(json, pos);
+                skipSpace(json, pos);
+                expect(json, pos, ':');
+                skipSpace(json, pos);
+                String value;
+                if (peek(json, pos) == '"') {
+                    value = readString(json, pos);
+                } else {
+                    int start = pos[0];
+                    while (pos[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(pos[0])) < 0) pos[0]++;
+                    value = json.substring(start, pos[0]);
+                    if (value.equals("null")) value = null;
+                    else if (value.isEmpty() || value.startsWith("{") || value.startsWith("[")) {
+                        throw new BadRequest("Only flat JSON objects are accepted");
+                    }
+                }
+                if (value != null) values.put(key, value);
+                skipSpace(json, pos);
+                char c = peek(json, pos);
+                pos[0]++;
+                if (c == '}') return values;
+                if (c != ',') throw new BadRequest("Malformed JSON body");
+            }
+        }
+
+        private static String readString(String json, int[] pos) {
+            expect(json, pos, '"');
+            StringBuilder out = new StringBuilder();
+            while (pos[0] < json.length()) {
+                char c = json.charAt(pos[0]++);
+                if (c == '"') return out.toString();
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                if (pos[0] >= json.length()) break;
+                char e = json.charAt(pos[0]++);
+                switch (e) {
+                    case 'n' -> out.append('\n');
+                    case 'r' -> out.append('\r');
+                    case 't' -> out.append('\t');
+                    case 'b' -> out.append('\b');
+                    case 'f' -> out.append('\f');
+                    case 'u' -> {
+                        if (pos[0] + 4 > json.length()) throw new BadRequest("Malformed JSON body");
+                        try {
+                            out.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new BadRequest("Malformed JSON body");
+                        }
+                        pos[0] += 4;
+                    }
+                    default -> out.append(e);
+                }
+            }
+            throw new BadRequest("Unterminated JSON string");
+        }
+
+        private static void expect(String json, int[] pos, char c) {
+            if (peek(json, pos) != c) throw new BadRequest("Malformed JSON body");
+            pos[0]++;
+        }
+
+        private static char peek(String json, int[] pos) {
+            if (pos[0] >= json.length()) throw new BadRequest("Malformed JSON body");
+            return json.charAt(pos[0]);
+        }
+
+        private static void skipSpace(String json, int[] pos) {
+            while (pos[0] < json.length() && Character.isWhitespace(json.charAt(pos[0]))) pos[0]++;
+        }
+    }
+}
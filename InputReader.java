@@ -0,0 +1,131 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Whitespace tokenizer shared by every menu operation, replacing the Scanner each
+// method used to create. Reads line by line from one BufferedReader, so tokens that
+// arrive together on piped input are never lost between operations.
+//
+// In interactive mode a malformed number is re-prompted, as before. In script mode
+// (one command per line) a missing or malformed argument throws InputException so the
+// command fails on its own; double quotes group words into one token and "-" stands
+// for an empty value.
+class InputReader {
+
+    static class InputException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        InputException(String message) {
+            super(message);
+        }
+    }
+
+    private final BufferedReader reader;
+    private final boolean interactive;
+    private String line = "";
+    private int pos;
+
+    InputReader(BufferedReader reader, boolean interactive) {
+        this.reader = reader;
+        this.interactive = interactive;
+    }
+
+    // Tokenizer over a single script line
+    static InputReader ofLine(String line) {
+        InputReader in = new InputReader(null, false);
+        in.line = line;
+        return in;
+    }
+
+    boolean isInteractive() {
+        return interactive;
+    }
+
+    // Next token, or null at end of input
+    String next() {
+        while (true) {
+            skipWhitespace();
+            if (pos < line.length()) {
+                return readToken();
+            }
+            if (!readLine()) {
+                return null;
+            }
+        }
+    }
+
+    int nextInt() {
+        while (true) {
+            String token = next();
+            if (token == null) {
+                if (interactive) {
+                    throw new InputException("End of input");
+                }
+                throw new InputException("Missing number argument");
+            }
+            try {
+                return Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                if (!interactive) {
+                    throw new InputException("Not a number: " + token);
+                }
+                System.out.println("Invalid input. Enter a number:");
+            }
+        }
+    }
+
+    // Free text that may be empty: the whole next line when interactive,
+    // otherwise the next token ("-" or a missing token means empty)
+    String nextText() {
+        if (interactive) {
+            pos = line.length(); // drop what is left of the current line
+            if (!readLine()) {
+                return "";
+            }
+            pos = line.length();
+            return line.trim();
+        }
+        String token = next();
+        return token == null || token.equals("-") ? "" : token;
+    }
+
+    private void skipWhitespace() {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private String readToken() {
+        if (!interactive && line.charAt(pos) == '"') {
+            int end = line.indexOf('"', pos + 1);
+            if (end < 0) {
+                throw new InputException("Unterminated quote");
+            }
+            String token = line.substring(pos + 1, end);
+            pos = end + 1;
+            return token;
+        }
+        int start = pos;
+        while (pos < line.length() && !Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return line.substring(start, pos);
+    }
+
+    private boolean readLine() {
+        if (reader == null) {
+            return false;
+        }
+        try {
+            String next = reader.readLine();
+            if (next == null) {
+                return false;
+            }
+            line = next;
+            pos = 0;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
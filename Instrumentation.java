@@ -0,0 +1,341 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Timing instrumentation for JDBC calls and menu operations.
+// wrap() returns a Connection proxy that times every statement execution per SQL text and
+// counts round trips and rows fetched, plus commit and rollback durations. Recording is
+// lock-free: per-key stats live in ConcurrentHashMaps and histograms are atomic bucket arrays.
+//
+//   -Dstats.enabled=false        turn instrumentation off
+//   -Dstats.slowQueryMs=100      log statements slower than this to stderr (or stats.slowQueryLog)
+//   -Dstats.file=<path>          append a stats dump to this file every stats.intervalSec seconds
+// It also estimates the bytes bound to INSERT/UPDATE/DELETE statements (for CommitPolicy).
+class Instrumentation {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("stats.enabled"));
+    static final long SLOW_QUERY_NANOS = Long.getLong("stats.slowQueryMs", 100L) * 1_000_000L;
+    static final String SLOW_QUERY_LOG = System.getProperty("stats.slowQueryLog");
+    static final String STATS_FILE = System.getProperty("stats.file");
+    static final long STATS_INTERVAL_SEC = Long.getLong("stats.intervalSec", 60L);
+    static final int TOP_STATEMENTS = 20;
+
+    // Log-linear latency histogram: 8 sub-buckets per power of two (at most 12.5% error)
+    static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int LINEAR = 2 << SUB_BITS; // values below this get their own bucket
+        private final AtomicLongArray buckets = new AtomicLongArray(512);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long v = Math.max(0, nanos);
+            buckets.incrementAndGet(index(v));
+            count.increment();
+            total.add(v);
+            if (v > max.get()) {
+                max.accumulateAndGet(v, Math::max);
+            }
+        }
+
+        private static int index(long v) {
+            if (v < LINEAR) {
+                return (int) v;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            int top = (int) (v >>> shift); // in [2^SUB_BITS, 2^(SUB_BITS+1))
+            return LINEAR + (shift - 1) * (1 << SUB_BITS) + (top - (1 << SUB_BITS));
+        }
+
+        private static long upperBound(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int shift = (index - LINEAR) / (1 << SUB_BITS) + 1;
+            long top = (index - LINEAR) % (1 << SUB_BITS) + (1 << SUB_BITS);
+            return ((top + 1) << shift) - 1;
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long totalNanos() {
+            return total.sum();
+        }
+
+        long maxNanos() {
+            return max.get();
+        }
+
+        long percentileNanos(double p) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        String summary() {
+            return String.format("count=%d p50=%.3fms p99=%.3fms max=%.3fms",
+                    count(), percentileNanos(0.50) / 1e6, percentileNanos(0.99) / 1e6, maxNanos() / 1e6);
+        }
+    }
+
+    static final class SqlStats {
+        final Histogram latency = new Histogram();
+        final LongAdder rows = new LongAdder();
+    }
+
+    private static final Map<String, SqlStats> statements = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> operations = new ConcurrentHashMap<>();
+    private static final Histogram commits = new Histogram();
+    private static final Histogram rollbacks = new Histogram();
+    private static final LongAdder writtenBytes = new LongAdder();
+    private static ScheduledExecutorService writer;
+
+    static Connection wrap(Connection conn) {
+        if (!ENABLED) {
+            return conn;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(conn));
+    }
+
+    // Time one menu operation
+    static void recordOperation(String name, long nanos) {
+        if (ENABLED) {
+            operations.computeIfAbsent(name, k -> new Histogram()).record(nanos);
+        }
+    }
+
+    private static SqlStats statsFor(String sql) {
+        SqlStats stats = statements.get(sql);
+        return stats != null ? stats : statements.computeIfAbsent(sql, k -> new SqlStats());
+    }
+
+    private static void recordStatement(String sql, long nanos) {
+        statsFor(sql).latency.record(nanos);
+        if (nanos >= SLOW_QUERY_NANOS) {
+            logSlowQuery(sql, nanos);
+        }
+    }
+
+    private static void logSlowQuery(String sql, long nanos) {
+        String line = String.format("%s slow query %.3fms: %s", LocalDateTime.now(), nanos / 1e6, sql);
+        if (SLOW_QUERY_LOG == null) {
+            System.err.println(line);
+            return;
+        }
+        try {
+            Files.writeString(Path.of(SLOW_QUERY_LOG), line + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println(line);
+        }
+    }
+
+    // Approximate parameter bytes sent with write statements so far
+    static long writtenBytes() {
+        return writtenBytes.sum();
+    }
+
+    private static boolean isWrite(String sql) {
+        String verb = sql.stripLeading();
+        return verb.regionMatches(true, 0, "INSERT", 0, 6) || verb.regionMatches(true, 0, "UPDATE", 0, 6)
+                || verb.regionMatches(true, 0, "DELETE", 0, 6);
+    }
+
+    private static long sizeOf(Object value) {
+        if (value instanceof String s) return s.length();
+        if (value instanceof byte[] bytes) return bytes.length;
+        return 8;
+    }
+
+    // Distinct SQL texts executed through wrapped connections so far, sorted
+    static List<String> statementTexts() {
+        List<String> texts = new ArrayList<>(statements.keySet());
+        texts.remove("<batch>");
+        texts.sort(null);
+        return texts;
+    }
+
+    // Human readable dump of everything recorded so far
+    static String report() {
+        StringWriter out = new StringWriter();
+        PrintWriter pw = new PrintWriter(out);
+        pw.println("=== Performance statistics " + LocalDateTime.now() + " ===");
+        pw.println("Operations:");
+        List<Map.Entry<String, Histogram>> ops = new ArrayList<>(operations.entrySet());
+        ops.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<String, Histogram> op : ops) {
+            pw.println("  " + op.getKey() + ": " + op.getValue().summary());
+        }
+        pw.println("Commits:   " + commits.summary());
+        pw.println("Rollbacks: " + rollbacks.summary());
+
+        long roundTrips = 0;
+        long rows = 0;
+        for (SqlStats stats : statements.values()) {
+            roundTrips += stats.latency.count();
+            rows += stats.rows.sum();
+        }
+        pw.println("Statements (top " + TOP_STATEMENTS + " by total time; " + roundTrips
+                + " round trips, " + rows + " rows fetched overall):");
+        List<Map.Entry<String, SqlStats>> sql = new ArrayList<>(statements.entrySet());
+        sql.sort(Comparator.comparingLong((Map.Entry<String, SqlStats> e) -> e.getValue().latency.totalNanos()).reversed());
+        for (Map.Entry<String, SqlStats> e : sql.subList(0, Math.min(TOP_STATEMENTS, sql.size()))) {
+            pw.println("  " + e.getValue().latency.summary() + " rows=" + e.getValue().rows.sum());
+            pw.println("    " + e.getKey());
+        }
+        pw.flush();
+        return out.toString();
+    }
+
+    // Start appending report() to stats.file every stats.intervalSec seconds, if configured
+    static synchronized void startPeriodicDump() {
+        if (!ENABLED || STATS_FILE == null || writer != null) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stats-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleAtFixedRate(Instrumentation::dumpToFile, STATS_INTERVAL_SEC, STATS_INTERVAL_SEC, TimeUnit.SECONDS);
+    }
+
+    static void dumpToFile() {
+        if (STATS_FILE == null) {
+            return;
+        }
+        try {
+            Files.writeString(Path.of(STATS_FILE), report(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Could not write stats file: " + e.getMessage());
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+
+        ConnectionHandler(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("commit") || name.equals("rollback")) {
+                long start = System.nanoTime();
+                try {
+                    return Instrumentation.invoke(conn, method, args);
+                } finally {
+                    (name.equals("commit") ? commits : rollbacks).record(System.nanoTime() - start);
+                }
+            }
+            Object result = Instrumentation.invoke(conn, method, args);
+            if (result instanceof Statement statement) {
+                String sql = name.equals("prepareStatement") ? (String) args[0] : null;
+                Class<?> type = result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                        new StatementHandler(statement, sql, (Connection) proxy));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private final Connection owner;
+        private final boolean write;
+
+        StatementHandler(Statement statement, String preparedSql, Connection owner) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+            this.owner = owner;
+            this.write = preparedSql != null && isWrite(preparedSql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getConnection")) {
+                return owner;
+            }
+            if (!name.startsWith("execute")) {
+                if (write && name.startsWith("set") && args != null && args.length >= 2) {
+                    writtenBytes.add(sizeOf(args[1]));
+                }
+                return Instrumentation.invoke(statement, method, args);
+            }
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s
+                    : preparedSql != null ? preparedSql : "<batch>";
+            if (preparedSql == null && isWrite(sql)) {
+                writtenBytes.add(sql.length());
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = Instrumentation.invoke(statement, method, args);
+            } finally {
+                recordStatement(sql, System.nanoTime() - start);
+            }
+            if (result instanceof ResultSet rs) {
+                SqlStats stats = statsFor(sql);
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        (rsProxy, rsMethod, rsArgs) -> {
+                            Object value = Instrumentation.invoke(rs, rsMethod, rsArgs);
+                            if (rsMethod.getName().equals("next") && Boolean.TRUE.equals(value)) {
+                                stats.rows.increment();
+                            }
+                            return value;
+                        });
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,830 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Stress/benchmark harness for the JdbcDemo data access code.
+// Runs against bench.url (defaults to JdbcDemo.DB_URL). For a local run put an embedded
+// driver on the classpath and point it at e.g. jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1
+// with -Dbench.init=true so init_db.sql is loaded first.
+//
+// Usage: java JdbcBench <scenario>
+//   pool       - throughput of concurrent lookups at increasing pool sizes
+//   stmtcache  - enrollment lookups with the prepared statement cache off and on
+//   roundtrips - round trips and latency per mutation, check-then-act vs set-based
+//   ops        - every DataAccess operation at each data size in bench.sizes (students) and
+//                each thread count in bench.threadCounts; reloads init_db.sql and seeds
+//                bench.colleges colleges, bench.courses courses and
+//                bench.enrollmentsPerStudent enrollments per student for every size.
+//                bench.ops limits the run to a comma separated list of operation names.
+//                Each measurement is preceded by a bench.warmupSeconds warm-up.
+//   snapshot   - per-college reports through SQL GROUP BY vs the in-memory StudentSnapshot,
+//                plus snapshot load time and memory, at each size in bench.sizes
+//   namesearch - NameSearchIndex substring and prefix lookups over bench.searchStudents
+//                synthetic names (in memory, no database needed), limit bench.searchLimit
+//   http       - load test of HttpService: a read-mostly request mix from each client count in
+//                bench.threadCounts, over a data set of the first size in bench.sizes;
+//                throughput plus p50/p99/p99.9 latency per client count
+//   replicas   - ReplicaRouter against bench.replicaUrl, kept in sync with bench.url by a copier
+//                that runs every bench.replicationLagMs (simulated lag). Each iteration moves a
+//                student to another college, commits, and reads the college back through the
+//                router; reports stale reads with readYourWrites none vs window.
+//   enrollqueue - enrollment bursts from each client count in bench.threadCounts: one
+//                transaction per enrollment vs the EnrollmentQueue write-behind path (enroll.*
+//                properties); throughput, p50/p99 latency and the queue's batch statistics
+//   contention  - hot-row transactions from each client count in bench.threadCounts: every
+//                transaction runs updateCollegeFee on two of the first bench.hotRows colleges in
+//                random order, so concurrent transactions deadlock. Goodput (committed
+//                transactions/s) and failures without retries vs with TransactionRetry.
+//   journal     - MutationJournal append and replay throughput (files only, no database needed):
+//                bench.journalEntries transactions of bench.journalMutations mutations each,
+//                appended with journal.sync off and on (the synced run appends a tenth as many),
+//                then read back and decoded; segments of journal.segmentBytes in a temporary directory
+public class JdbcBench {
+
+    static final String URL = System.getProperty("bench.url", JdbcDemo.DB_URL);
+    static final String USER = System.getProperty("bench.user", JdbcDemo.USER);
+    static final String PASSWORD = System.getProperty("bench.password", JdbcDemo.PASSWORD);
+    static final boolean INIT = Boolean.getBoolean("bench.init");
+    static final int THREADS = Integer.getInteger("bench.threads", 16);
+    static final int SECONDS = Integer.getInteger("bench.seconds", 5);
+    static final String POOL_SIZES = System.getProperty("bench.poolSizes", "1,2,4,8,16");
+    static final int ITERATIONS = Integer.getInteger("bench.iterations", 20_000);
+    static final String SIZES = System.getProperty("bench.sizes", "1000,100000");
+    static final String THREAD_COUNTS = System.getProperty("bench.threadCounts", "1,4,16");
+    static final int COLLEGES = Integer.getInteger("bench.colleges", 50);
+    static final int COURSES = Integer.getInteger("bench.courses", 200);
+    static final int ENROLLMENTS_PER_STUDENT = Integer.getInteger("bench.enrollmentsPerStudent", 3);
+    static final int WARMUP_SECONDS = Integer.getInteger("bench.warmupSeconds", 2);
+    static final String OPS = System.getProperty("bench.ops", "");
+    static final int SEARCH_STUDENTS = Integer.getInteger("bench.searchStudents", 1_000_000);
+    static final int SEARCH_LIMIT = Integer.getInteger("bench.searchLimit", 20);
+    static final String REPLICA_URL = System.getProperty("bench.replicaUrl", "");
+    static final long REPLICATION_LAG_MS = Long.getLong("bench.replicationLagMs", 200L);
+    static final int HOT_ROWS = Integer.getInteger("bench.hotRows", 4);
+    static final int JOURNAL_ENTRIES = Integer.getInteger("bench.journalEntries", 1_000_000);
+    static final int JOURNAL_MUTATIONS = Integer.getInteger("bench.journalMutations", 4);
+
+    public static void main(String[] args) throws Exception {
+        String scenario = args.length > 0 ? args[0] : "pool";
+        if (INIT && !scenario.equals("namesearch") && !scenario.equals("journal")) {
+            try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+                runSqlScript(conn, Path.of("init_db.sql"));
+            }
+        }
+        switch (scenario) {
+            case "pool" -> poolScaling();
+            case "stmtcache" -> statementCache();
+            case "roundtrips" -> mutationRoundTrips();
+            case "ops" -> operations();
+            case "snapshot" -> snapshotReports();
+            case "namesearch" -> nameSearch();
+            case "http" -> httpLoad();
+            case "replicas" -> replicaRouting();
+            case "enrollqueue" -> enrollmentQueue();
+            case "contention" -> contention();
+            case "journal" -> journal();
+            default -> System.out.println("Unknown scenario: " + scenario);
+        }
+    }
+
+    // Concurrent idExists lookups through pools of increasing size
+    static void poolScaling() throws Exception {
+        System.out.println("Pool scaling: " + THREADS + " threads, " + SECONDS + "s per pool size");
+        for (String size : POOL_SIZES.split(",")) {
+            int maxSize = Integer.parseInt(size.trim());
+            try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, maxSize, maxSize, 0, 30_000,
+                    JdbcDemo.STATEMENT_CACHE_SIZE)) {
+                long ops = runConcurrently(THREADS, SECONDS, () -> {
+                    try (Connection conn = pool.borrow()) {
+                        int id = ThreadLocalRandom.current().nextInt(1, 9);
+                        JdbcDemo.idExists(conn, "Student", "student_id", id);
+                    }
+                });
+                System.out.printf("poolSize=%d  ops/s=%.0f%n", maxSize, ops / (double) SECONDS);
+                System.out.println("  " + pool.stats());
+            }
+        }
+    }
+
+    // Before/after comparison of the per-connection statement cache on the
+    // lookups enrollStudentInCourse issues for every enrollment
+    static void statementCache() throws Exception {
+        for (int cacheSize : new int[]{0, JdbcDemo.STATEMENT_CACHE_SIZE}) {
+            try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, 1, 1, 0, 30_000, cacheSize);
+                 Connection conn = pool.borrow()) {
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    int studentId = 1 + i % 8;
+                    int courseId = 1 + i % 7;
+                    probe(conn, "SELECT 1 FROM Student WHERE student_id = ?", studentId);
+                    probe(conn, "SELECT 1 FROM Courses WHERE course_id = ?", courseId);
+                    probe(conn, "SELECT 1 FROM Student s JOIN CollegeCourses cc ON s.college_id_choice = cc.college_id WHERE s.student_id = ? AND cc.course_id = ?", studentId, courseId);
+                    probe(conn, "SELECT 1 FROM StudentCourses WHERE student_id = ? AND course_id = ?", studentId, courseId);
+                }
+                double micros = (System.nanoTime() - start) / 1e3 / ITERATIONS;
+                System.out.printf("cacheSize=%d  %.1f us/enrollment check  hits=%d misses=%d%n",
+                        cacheSize, micros, pool.statementCacheHits(), pool.statementCacheMisses());
+            }
+        }
+    }
+
+    // Round trips and latency per mutation in both DataAccess modes.
+    // Every iteration works on a fresh student id and is rolled back afterwards.
+    static void mutationRoundTrips() throws Exception {
+        for (boolean setBased : new boolean[]{false, true}) {
+            DataAccess.setBased = setBased;
+            Map<String, long[]> totals = new LinkedHashMap<>(); // name -> {nanos, round trips}
+            AtomicLong trips = new AtomicLong();
+            try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, 1, 1, 0, 30_000, JdbcDemo.STATEMENT_CACHE_SIZE);
+                 Connection pooled = pool.borrow()) {
+                Connection conn = countingConnection(pooled, trips);
+                conn.setAutoCommit(false);
+                int iterations = ITERATIONS / 10;
+                for (int i = 0; i < iterations; i++) {
+                    int studentId = 1_000_000 + i;
+                    measure(totals, trips, "addStudent", () -> DataAccess.addStudent(conn, studentId, "Bench", 20, 1));
+                    measure(totals, trips, "enrollStudentInCourse", () -> DataAccess.enrollStudentInCourse(conn, studentId, 1));
+                    measure(totals, trips, "enrollStudentInCourse (duplicate)", () -> DataAccess.enrollStudentInCourse(conn, studentId, 1));
+                    measure(totals, trips, "addStudentToCollege", () -> DataAccess.addStudentToCollege(conn, studentId, 2));
+                    measure(totals, trips, "addCourseToCollege", () -> DataAccess.addCourseToCollege(conn, 3, 1));
+                    measure(totals, trips, "removeStudentFromCourse", () -> DataAccess.removeStudentFromCourse(conn, studentId, 1));
+                    measure(totals, trips, "deleteStudent", () -> DataAccess.deleteStudent(conn, studentId));
+                    measure(totals, trips, "deleteStudent (missing)", () -> DataAccess.deleteStudent(conn, studentId));
+                    conn.rollback();
+                    ReferenceDataCache.rolledBack();
+                    NameSearchIndex.rolledBack();
+                }
+                System.out.println(setBased ? "Set-based:" : "Check-then-act:");
+                for (Map.Entry<String, long[]> e : totals.entrySet()) {
+                    System.out.printf("  %-36s %6.2f round trips  %8.1f us%n", e.getKey(),
+                            e.getValue()[1] / (double) iterations, e.getValue()[0] / 1e3 / iterations);
+                }
+            }
+        }
+    }
+
+    interface Op {
+        DataAccess.Outcome run() throws SQLException;
+    }
+
+    private static void measure(Map<String, long[]> totals, AtomicLong trips, String name, Op op) throws SQLException {
+        long tripsBefore = trips.get();
+        long start = System.nanoTime();
+        op.run();
+        long[] t = totals.computeIfAbsent(name, k -> new long[2]);
+        t[0] += System.nanoTime() - start;
+        t[1] += trips.get() - tripsBefore;
+    }
+
+    // Wrap a connection so every execute* call on its statements counts as one round trip
+    static Connection countingConnection(Connection conn, AtomicLong trips) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(conn, method, args);
+                    if (result instanceof Statement statement) {
+                        Class<?> type = result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                                (sProxy, sMethod, sArgs) -> {
+                                    if (sMethod.getName().startsWith("execute")) {
+                                        trips.incrementAndGet();
+                                    }
+                                    return invoke(statement, sMethod, sArgs);
+                                });
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Throughput and latency of each DataAccess operation, separated from console I/O
+    static void operations() throws Exception {
+        for (String size : SIZES.split(",")) {
+            int students = Integer.parseInt(size.trim());
+            try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+                runSqlScript(conn, Path.of("init_db.sql"));
+                seed(conn, students);
+            }
+            ReferenceDataCache.invalidateAll();
+
+            Map<String, ConnectionTask> ops = operationsFor(students);
+            int maxThreads = 1;
+            for (String t : THREAD_COUNTS.split(",")) {
+                maxThreads = Math.max(maxThreads, Integer.parseInt(t.trim()));
+            }
+            System.out.printf("%n%d students, %d colleges, %d courses, %d enrollments/student%n",
+                    students, COLLEGES, COURSES, ENROLLMENTS_PER_STUDENT);
+            System.out.printf("%-28s %8s %12s %12s%n", "operation", "threads", "ops/s", "avg us");
+            try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, 1, maxThreads, 0, 30_000,
+                    JdbcDemo.STATEMENT_CACHE_SIZE)) {
+                for (Map.Entry<String, ConnectionTask> op : ops.entrySet()) {
+                    if (!OPS.isEmpty() && !List.of(OPS.split(",")).contains(op.getKey())) {
+                        continue;
+                    }
+                    for (String t : THREAD_COUNTS.split(",")) {
+                        int threads = Integer.parseInt(t.trim());
+                        Task task = () -> {
+                            try (Connection conn = pool.borrow()) {
+                                op.getValue().run(conn);
+                                ReferenceDataCache.committed(); // auto-commit
+                                NameSearchIndex.committed();
+                            }
+                        };
+                        runConcurrently(threads, WARMUP_SECONDS, task);
+                        long done = runConcurrently(threads, SECONDS, task);
+                        double opsPerSecond = done / (double) SECONDS;
+                        System.out.printf("%-28s %8d %12.0f %12.1f%n", op.getKey(), threads, opsPerSecond,
+                                done == 0 ? 0.0 : threads * SECONDS * 1e6 / done);
+                    }
+                }
+            }
+        }
+    }
+
+    interface ConnectionTask {
+        void run(Connection conn) throws SQLException;
+    }
+
+    // Operations with randomized arguments over a seeded data set of the given size
+    static Map<String, ConnectionTask> operationsFor(int students) {
+        AtomicLong nextStudentId = new AtomicLong(students);
+        int spareCourse = COURSES + 1; // seeded without enrollments, so enroll/remove pairs never collide with seed data
+        Map<String, ConnectionTask> ops = new LinkedHashMap<>();
+        ops.put("addStudent+deleteStudent", conn -> {
+            int id = (int) nextStudentId.incrementAndGet();
+            DataAccess.addStudent(conn, id, "Bench" + id, 20, randomCollege());
+            DataAccess.deleteStudent(conn, id);
+        });
+        ops.put("enroll+removeFromCourse", conn -> {
+            int id = randomStudent(students);
+            DataAccess.enrollStudentInCourse(conn, id, spareCourse);
+            DataAccess.removeStudentFromCourse(conn, id, spareCourse);
+        });
+        ops.put("updateCollegeChoice", conn -> DataAccess.updateCollegeChoice(conn, randomStudent(students), randomCollege()));
+        ops.put("updateStudentDetails", conn -> DataAccess.updateStudentDetails(conn, randomStudent(students), "", 17 + ThreadLocalRandom.current().nextInt(9)));
+        ops.put("updateCollegeFee", conn -> DataAccess.updateCollegeFee(conn, randomCollege(), 100_000 + ThreadLocalRandom.current().nextInt(1_000_000)));
+        ops.put("addCourseToCollege+remove", conn -> {
+            int college = randomCollege();
+            DataAccess.addCourseToCollege(conn, college, spareCourse);
+            DataAccess.removeCourseFromCollege(conn, college, spareCourse);
+        });
+        ops.put("studentsOfCollege", conn -> DataAccess.studentsOfCollege(conn, randomCollege()));
+        ops.put("coursesOfCollege", conn -> DataAccess.coursesOfCollege(conn, randomCollege()));
+        ops.put("enrolledCourses", conn -> DataAccess.enrolledCourses(conn, randomStudent(students)));
+        ops.put("studentsPerCollegeReport", DataAccess::studentsPerCollege);
+        ops.put("averageAgePerCollegeReport", DataAccess::averageAgePerCollege);
+        ops.put("searchStudentsByName", conn -> DataAccess.searchStudentsByName(conn, "Student" + randomStudent(students) / 10));
+        ops.put("pageOfStudents", conn -> TableListing.page(conn, TableListing.Table.STUDENT, randomStudent(students), 50, rs -> { }));
+        return ops;
+    }
+
+    private static int randomStudent(int students) {
+        return 1 + ThreadLocalRandom.current().nextInt(students);
+    }
+
+    private static int randomCollege() {
+        return 1 + ThreadLocalRandom.current().nextInt(COLLEGES);
+    }
+
+    // SQL reports vs snapshot reports, single-threaded, bench.seconds each
+    static void snapshotReports() throws Exception {
+        System.out.println("Snapshot reports: " + SECONDS + "s per measurement");
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            for (String size : SIZES.split(",")) {
+                int students = Integer.parseInt(size.trim());
+                runSqlScript(conn, Path.of("init_db.sql"));
+                seed(conn, students);
+
+                Runtime runtime = Runtime.getRuntime();
+                System.gc();
+                long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+                StudentSnapshot snapshot = StudentSnapshot.load(conn);
+                System.gc();
+                long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+                System.out.printf("students=%d: %s%n", students, snapshot.describe());
+                System.out.printf("  memory: %.1f MB per million students (arrays), heap delta %.1f MB%n",
+                        snapshot.memoryBytes() * 1e6 / Math.max(1, students) / 1e6, (heapAfter - heapBefore) / 1e6);
+                if (!snapshot.studentsPerCollege().equals(DataAccess.studentsPerCollege(conn))) {
+                    System.out.println("  WARNING: snapshot studentsPerCollege differs from SQL");
+                }
+
+                Map<String, ConnectionTask> reports = new LinkedHashMap<>();
+                reports.put("sql studentsPerCollege", DataAccess::studentsPerCollege);
+                reports.put("sql averageAgePerCollege", DataAccess::averageAgePerCollege);
+                reports.put("snapshot studentsPerCollege", c -> snapshot.studentsPerCollege());
+                reports.put("snapshot averageAgePerCollege", c -> snapshot.averageAgePerCollege());
+                reports.put("snapshot averageGpaPerCollege", c -> snapshot.averageGpaPerCollege());
+                reports.put("snapshot enrollmentsPerCollege", c -> snapshot.enrollmentsPerCollege());
+                for (Map.Entry<String, ConnectionTask> report : reports.entrySet()) {
+                    runConcurrently(1, WARMUP_SECONDS, () -> report.getValue().run(conn));
+                    long done = runConcurrently(1, SECONDS, () -> report.getValue().run(conn));
+                    System.out.printf("  %-32s %10.3f ms/report%n", report.getKey(), SECONDS * 1e3 / Math.max(1, done));
+                }
+            }
+        }
+    }
+
+    // Index build time, then per-lookup latency of random substring and prefix queries
+    static void nameSearch() {
+        String[] syllables = {"ra", "man", "a", "yu", "sh", "dit", "ya", "sar", "thak", "ash", "mi", "ar", "jun",
+                "ku", "nal", "ya", "sh", "pri", "ya", "ne", "ha", "vik", "ram", "an", "ja", "li", "ro", "hit"};
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] names = new String[SEARCH_STUDENTS];
+        for (int i = 0; i < names.length; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int k = 2 + random.nextInt(3); k > 0; k--) {
+                name.append(syllables[random.nextInt(syllables.length)]);
+            }
+            name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+            names[i] = name.append(' ').append(syllables[random.nextInt(syllables.length)]).append(i % 997).toString();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        NameSearchIndex index = new NameSearchIndex();
+        for (int i = 0; i < names.length; i++) {
+            index.add(i + 1, names[i]);
+        }
+        long buildNanos = System.nanoTime() - start;
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("Name search: %d students indexed in %.0f ms, heap delta %.0f MB%n",
+                index.size(), buildNanos / 1e6, (heapAfter - heapBefore) / 1e6);
+
+        for (boolean prefix : new boolean[]{false, true}) {
+            int queries = ITERATIONS;
+            long[] latencies = new long[queries];
+            long hits = 0;
+            for (int q = 0; q < queries; q++) {
+                String name = names[random.nextInt(names.length)];
+                int length = 3 + random.nextInt(4);
+                int from = prefix ? 0 : random.nextInt(Math.max(1, name.length() - length));
+                String text = name.substring(from, Math.min(name.length(), from + length));
+                long t = System.nanoTime();
+                hits += prefix ? index.searchPrefix(text, SEARCH_LIMIT).length : index.search(text, SEARCH_LIMIT).length;
+                latencies[q] = System.nanoTime() - t;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("  %-9s %d queries: p50=%.3fms p99=%.3fms max=%.3fms, %.1f results/query%n",
+                    prefix ? "prefix" : "substring", queries, latencies[queries / 2] / 1e6,
+                    latencies[(int) (queries * 0.99)] / 1e6, latencies[queries - 1] / 1e6, (double) hits / queries);
+        }
+    }
+
+    // Append rate with and without forcing every entry to disk, then sequential replay (decode) rate
+    static void journal() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<MutationJournal.Mutation> transaction = new ArrayList<>();
+        for (int i = 0; i < JOURNAL_MUTATIONS; i++) {
+            int studentId = random.nextInt(1, 1_000_000);
+            transaction.add(switch (i % 3) {
+                case 0 -> new MutationJournal.Mutation(MutationJournal.Op.ENROLL, null, new int[]{studentId, random.nextInt(1, 200)});
+                case 1 -> new MutationJournal.Mutation(MutationJournal.Op.SET_COLLEGE_CHOICE, null, new int[]{studentId, random.nextInt(1, 50)});
+                default -> new MutationJournal.Mutation(MutationJournal.Op.ADD_STUDENT, "Student " + studentId,
+                        new int[]{studentId, random.nextInt(17, 30), random.nextInt(1, 50)});
+            });
+        }
+        Map<Integer, long[]> deltas = Map.of(1, new long[]{1, 1, 21}, 2, new long[]{-1, -1, -21});
+        System.out.println("Journal: transactions of " + JOURNAL_MUTATIONS + " mutations, segments of "
+                + MutationJournal.SEGMENT_BYTES / (1 << 20) + " MB");
+
+        for (boolean sync : new boolean[]{false, true}) {
+            Path dir = Files.createTempDirectory("journal-bench");
+            try {
+                int entries = sync ? Math.max(1, JOURNAL_ENTRIES / 10) : JOURNAL_ENTRIES;
+                long bytes;
+                long start = System.nanoTime();
+                try (MutationJournal journal = new MutationJournal(dir, MutationJournal.SEGMENT_BYTES, sync)) {
+                    for (int i = 0; i < entries; i++) {
+                        journal.append(MutationJournal.Kind.TRANSACTION, transaction, deltas);
+                    }
+                    bytes = journal.bytes();
+                }
+                double appendSeconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("  append sync=%-5s %d entries in %.2fs: %.0f entries/s, %.0f mutations/s%n", sync, entries,
+                        appendSeconds, entries / appendSeconds, entries * (double) JOURNAL_MUTATIONS / appendSeconds);
+
+                long[] mutations = {0};
+                start = System.nanoTime();
+                long read = MutationJournal.read(dir, entry -> mutations[0] += entry.mutations().size());
+                double replaySeconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("  replay            %d entries in %.2fs: %.0f entries/s, %.0f mutations/s, %.0f MB/s%n",
+                        read, replaySeconds, read / replaySeconds, mutations[0] / replaySeconds, bytes / 1e6 / replaySeconds);
+            } finally {
+                try (var files = Files.walk(dir)) {
+                    for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(file);
+                    }
+                }
+            }
+        }
+    }
+
+    // Concurrent HTTP clients against an in-process HttpService on an ephemeral port
+    static void httpLoad() throws Exception {
+        int students = Integer.parseInt(SIZES.split(",")[0].trim());
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            runSqlScript(conn, Path.of("init_db.sql"));
+            seed(conn, students);
+        }
+        try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, JdbcDemo.POOL_MIN_SIZE, JdbcDemo.POOL_MAX_SIZE,
+                JdbcDemo.POOL_IDLE_TIMEOUT_MS, JdbcDemo.POOL_BORROW_TIMEOUT_MS, JdbcDemo.STATEMENT_CACHE_SIZE)) {
+            HttpService service = new HttpService(pool, 0).start();
+            String base = "http://localhost:" + service.port();
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            System.out.println("HTTP load: " + students + " students, pool.maxSize=" + JdbcDemo.POOL_MAX_SIZE
+                    + ", " + HttpService.executorKind() + " threads, " + SECONDS + "s per client count");
+            System.out.printf("%8s %12s %10s %10s %10s %8s%n", "clients", "requests/s", "p50 ms", "p99 ms", "p99.9 ms", "errors");
+            try {
+                for (String count : THREAD_COUNTS.split(",")) {
+                    int clients = Integer.parseInt(count.trim());
+                    AtomicReference<Instrumentation.Histogram> latency = new AtomicReference<>(new Instrumentation.Histogram());
+                    AtomicLong errors = new AtomicLong();
+                    Task request = () -> {
+                        HttpRequest req = randomRequest(base, students);
+                        long start = System.nanoTime();
+                        try {
+                            if (client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode() >= 500) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        latency.get().record(System.nanoTime() - start);
+                    };
+                    runConcurrently(clients, WARMUP_SECONDS, request);
+                    Instrumentation.Histogram measured = new Instrumentation.Histogram();
+                    latency.set(measured);
+                    errors.set(0);
+                    long done = runConcurrently(clients, SECONDS, request);
+                    System.out.printf("%8d %12.0f %10.3f %10.3f %10.3f %8d%n", clients, done / (double) SECONDS,
+                            measured.percentileNanos(0.50) / 1e6, measured.percentileNanos(0.99) / 1e6,
+                            measured.percentileNanos(0.999) / 1e6, errors.get());
+                }
+            } finally {
+                service.stop();
+            }
+        }
+    }
+
+    // 80% reads, 20% college choice updates
+    private static HttpRequest randomRequest(String base, int students) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int student = randomStudent(students);
+        HttpRequest.Builder builder = switch (random.nextInt(5)) {
+            case 0 -> HttpRequest.newBuilder(URI.create(base + "/students/" + student + "/courses"));
+            case 1 -> HttpRequest.newBuilder(URI.create(base + "/colleges/" + randomCollege() + "/courses"));
+            case 2 -> HttpRequest.newBuilder(URI.create(base + "/students?after=" + student + "&limit=20"));
+            case 3 -> HttpRequest.newBuilder(URI.create(base + "/colleges/" + randomCollege() + "/students"));
+            default -> HttpRequest.newBuilder(URI.create(base + "/students/" + student + "/college"))
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"collegeId\": " + randomCollege() + "}"));
+        };
+        return builder.build();
+    }
+
+    // Random enrollments, each waited for by its client: direct transactions vs the queue
+    static void enrollmentQueue() throws Exception {
+        int students = Integer.parseInt(SIZES.split(",")[0].trim());
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            runSqlScript(conn, Path.of("init_db.sql"));
+            seed(conn, students);
+        }
+        System.out.println("Enrollment bursts: " + students + " students, " + COURSES + " courses, pool.maxSize="
+                + JdbcDemo.POOL_MAX_SIZE + ", batchSize=" + EnrollmentQueue.BATCH_SIZE + ", " + SECONDS + "s per run");
+        System.out.printf("%8s %-8s %14s %10s %10s%n", "clients", "path", "enrollments/s", "p50 ms", "p99 ms");
+        try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, JdbcDemo.POOL_MIN_SIZE, JdbcDemo.POOL_MAX_SIZE,
+                JdbcDemo.POOL_IDLE_TIMEOUT_MS, JdbcDemo.POOL_BORROW_TIMEOUT_MS, JdbcDemo.STATEMENT_CACHE_SIZE)) {
+            for (String count : THREAD_COUNTS.split(",")) {
+                int clients = Integer.parseInt(count.trim());
+                Instrumentation.Histogram direct = new Instrumentation.Histogram();
+                long done = runConcurrently(clients, SECONDS, () -> {
+                    long start = System.nanoTime();
+                    try (Connection conn = pool.borrow()) {
+                        conn.setAutoCommit(false);
+                        DataAccess.enrollStudentInCourse(conn, randomStudent(students), 1 + ThreadLocalRandom.current().nextInt(COURSES));
+                        conn.commit();
+                    }
+                    direct.record(System.nanoTime() - start);
+                });
+                System.out.printf("%8d %-8s %14.0f %10.3f %10.3f%n", clients, "direct", done / (double) SECONDS,
+                        direct.percentileNanos(0.50) / 1e6, direct.percentileNanos(0.99) / 1e6);
+
+                Instrumentation.Histogram queued = new Instrumentation.Histogram();
+                try (EnrollmentQueue queue = EnrollmentQueue.fromProperties(pool).start()) {
+                    done = runConcurrently(clients, SECONDS, () -> {
+                        long start = System.nanoTime();
+                        queue.enroll(randomStudent(students), 1 + ThreadLocalRandom.current().nextInt(COURSES));
+                        queued.record(System.nanoTime() - start);
+                    });
+                    System.out.printf("%8d %-8s %14.0f %10.3f %10.3f%n", clients, "queued", done / (double) SECONDS,
+                            queued.percentileNanos(0.50) / 1e6, queued.percentileNanos(0.99) / 1e6);
+                    System.out.println("  " + queue.stats());
+                }
+            }
+        }
+    }
+
+    // Lock-order inversions on a few hot College rows, without and with retries
+    static void contention() throws Exception {
+        try (Connection conn = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            runSqlScript(conn, Path.of("init_db.sql"));
+            seed(conn, Integer.parseInt(SIZES.split(",")[0].trim()));
+        }
+        int hotRows = Math.max(2, Math.min(HOT_ROWS, COLLEGES));
+        System.out.println("Hot-row contention: " + hotRows + " hot colleges, " + SECONDS + "s per run");
+        System.out.printf("%8s %-8s %12s %10s %10s%n", "clients", "retry", "goodput/s", "failed", "retries");
+        try (ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, JdbcDemo.POOL_MIN_SIZE, JdbcDemo.POOL_MAX_SIZE,
+                JdbcDemo.POOL_IDLE_TIMEOUT_MS, JdbcDemo.POOL_BORROW_TIMEOUT_MS, JdbcDemo.STATEMENT_CACHE_SIZE)) {
+            for (String count : THREAD_COUNTS.split(",")) {
+                int clients = Integer.parseInt(count.trim());
+                for (boolean retrying : new boolean[]{false, true}) {
+                    TransactionRetry retry = retrying ? new TransactionRetry(TransactionRetry.MAX_ATTEMPTS,
+                            TransactionRetry.BASE_DELAY_MS, TransactionRetry.MAX_DELAY_MS, TransactionRetry.BUDGET_RATIO)
+                            : new TransactionRetry(1, 0, 0, 0);
+                    AtomicLong failed = new AtomicLong();
+                    long committed = runConcurrently(clients, SECONDS, () -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        int first = 1 + random.nextInt(hotRows);
+                        int second = 1 + (first + random.nextInt(hotRows - 1)) % hotRows;
+                        try (Connection conn = pool.borrow()) {
+                            conn.setAutoCommit(false);
+                            retry.transaction(conn, c -> {
+                                DataAccess.updateCollegeFee(c, first, 100_000 + ThreadLocalRandom.current().nextInt(3_000_000));
+                                DataAccess.updateCollegeFee(c, second, 100_000 + ThreadLocalRandom.current().nextInt(3_000_000));
+                                return null;
+                            });
+                        } catch (SQLException e) {
+                            if (TransactionRetry.classify(e) == TransactionRetry.Failure.OTHER) throw e;
+                            failed.incrementAndGet();
+                        }
+                    }) - failed.get();
+                    System.out.printf("%8d %-8s %12.0f %10d %10d%n", clients, retrying ? "on" : "off",
+                            committed / (double) SECONDS, failed.get(), retry.retries());
+                }
+            }
+        }
+    }
+
+    static void replicaRouting() throws Exception {
+        if (REPLICA_URL.isEmpty()) {
+            System.out.println("Set -Dbench.replicaUrl to a second database (e.g. another embedded in-memory database)");
+            return;
+        }
+        int students = Integer.parseInt(SIZES.split(",")[0].trim());
+        try (Connection primary = DriverManager.getConnection(URL, USER, PASSWORD);
+             Connection replica = DriverManager.getConnection(REPLICA_URL, USER, PASSWORD)) {
+            runSqlScript(primary, Path.of("init_db.sql"));
+            runSqlScript(replica, Path.of("init_db.sql"));
+            seed(primary, students);
+            copyTables(primary, replica);
+
+            Thread copier = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(REPLICATION_LAG_MS);
+                        copyTables(primary, replica);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (SQLException e) {
+                        System.out.println("  replication copy failed: " + e.getMessage());
+                    }
+                }
+            }, "replication-copier");
+            copier.setDaemon(true);
+            copier.start();
+
+            System.out.println("Replica routing: " + students + " students, replication lag ~" + REPLICATION_LAG_MS
+                    + "ms, " + ITERATIONS + " write+read iterations per mode");
+            try (Connection writer = DriverManager.getConnection(URL, USER, PASSWORD)) {
+                writer.setAutoCommit(false);
+                for (boolean readYourWrites : new boolean[]{false, true}) {
+                    try (ReplicaRouter router = new ReplicaRouter(List.of(REPLICA_URL), USER, PASSWORD, 2,
+                            readYourWrites, REPLICATION_LAG_MS * 2)) {
+                        long stale = 0;
+                        long start = System.nanoTime();
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            int student = randomStudent(students);
+                            int college = randomCollege();
+                            router.wrote();
+                            DataAccess.updateCollegeChoice(writer, student, college);
+                            writer.commit();
+                            router.committed();
+
+                            List<DataAccess.Student> rows = null;
+                            if (router.readFromReplica()) {
+                                try (Connection conn = router.borrowReplica()) {
+                                    if (conn != null) rows = DataAccess.studentsOfCollege(conn, college);
+                                }
+                            }
+                            if (rows == null) rows = DataAccess.studentsOfCollege(writer, college);
+                            if (rows.stream().noneMatch(s -> s.id() == student)) stale++;
+                            ReferenceDataCache.invalidateAll();
+                        }
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        System.out.printf("  readYourWrites=%-6s stale reads %d/%d (%.1f%%), %.0f iterations/s%n  %s%n",
+                                readYourWrites ? "window" : "none", stale, ITERATIONS, 100.0 * stale / ITERATIONS,
+                                ITERATIONS / seconds, router.stats());
+                    }
+                }
+            } finally {
+                copier.interrupt();
+                copier.join();
+            }
+        }
+    }
+
+    // Naive full copy of every table, standing in for asynchronous replication
+    static synchronized void copyTables(Connection from, Connection to) throws SQLException {
+        String[][] tables = {
+                {"College", "college_id, college_name, college_fees"},
+                {"Courses", "course_id, course_name, course_duration"},
+                {"Student", "student_id, student_name, student_age, college_id_choice, gpa"},
+                {"CollegeCourses", "college_id, course_id"},
+                {"StudentCourses", "student_id, course_id"},
+                {"CoursePrerequisites", "course_id, prerequisite_id"}};
+        boolean autoCommit = to.getAutoCommit();
+        to.setAutoCommit(false);
+        try (Statement stmt = to.createStatement()) {
+            for (int t = tables.length - 1; t >= 0; t--) {
+                stmt.executeUpdate("DELETE FROM " + tables[t][0]);
+            }
+            for (String[] table : tables) {
+                int columns = table[1].split(",").length;
+                String insert = "INSERT INTO " + table[0] + " (" + table[1] + ") VALUES (" + "?, ".repeat(columns - 1) + "?)";
+                try (Statement read = from.createStatement();
+                     ResultSet rs = read.executeQuery("SELECT " + table[1] + " FROM " + table[0]);
+                     PreparedStatement write = to.prepareStatement(insert)) {
+                    while (rs.next()) {
+                        for (int c = 1; c <= columns; c++) {
+                            write.setObject(c, rs.getObject(c));
+                        }
+                        write.addBatch();
+                    }
+                    write.executeBatch();
+                }
+            }
+            to.commit();
+        } finally {
+            to.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Replace the sample rows from init_db.sql with a data set of the given size
+    static void seed(Connection conn, int students) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : new String[]{"StudentCourses", "CollegeCourses", "CoursePrerequisites", "Student", "Courses", "College"}) {
+                stmt.executeUpdate("DELETE FROM " + table);
+            }
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (PreparedStatement college = conn.prepareStatement("INSERT INTO College (college_id, college_name, college_fees) VALUES (?, ?, ?)");
+             PreparedStatement course = conn.prepareStatement("INSERT INTO Courses (course_id, course_name, course_duration) VALUES (?, ?, ?)");
+             PreparedStatement offer = conn.prepareStatement("INSERT INTO CollegeCourses (college_id, course_id) VALUES (?, ?)");
+             PreparedStatement student = conn.prepareStatement("INSERT INTO Student (student_id, student_name, student_age, college_id_choice) VALUES (?, ?, ?, ?)");
+             PreparedStatement enroll = conn.prepareStatement("INSERT INTO StudentCourses (student_id, course_id) VALUES (?, ?)")) {
+            for (int id = 1; id <= COLLEGES; id++) {
+                college.setInt(1, id);
+                college.setString(2, "College" + id);
+                college.setInt(3, 100_000 + random.nextInt(3_000_000));
+                college.addBatch();
+            }
+            college.executeBatch();
+            for (int id = 1; id <= COURSES + 1; id++) {
+                course.setInt(1, id);
+                course.setString(2, "Course" + id);
+                course.setInt(3, 3 + random.nextInt(3));
+                course.addBatch();
+            }
+            course.executeBatch();
+            for (int collegeId = 1; collegeId <= COLLEGES; collegeId++) {
+                for (int k = 0; k < Math.min(10, COURSES); k++) {
+                    offer.setInt(1, collegeId);
+                    offer.setInt(2, 1 + (collegeId * 7 + k) % COURSES);
+                    offer.addBatch();
+                }
+            }
+            offer.executeBatch();
+            conn.commit();
+
+            for (int id = 1; id <= students; id++) {
+                student.setInt(1, id);
+                student.setString(2, "Student" + id);
+                student.setInt(3, 17 + random.nextInt(9));
+                student.setInt(4, randomCollege());
+                student.addBatch();
+                for (int k = 0; k < Math.min(ENROLLMENTS_PER_STUDENT, COURSES); k++) {
+                    enroll.setInt(1, id);
+                    enroll.setInt(2, 1 + (id + k) % COURSES);
+                    enroll.addBatch();
+                }
+                if (id % 1000 == 0 || id == students) {
+                    student.executeBatch();
+                    enroll.executeBatch();
+                    conn.commit();
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Run an existence query with integer parameters
+    static boolean probe(Connection conn, String sql, int... params) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setInt(i + 1, params[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    interface Task {
+        void run() throws SQLException;
+    }
+
+    // Run the task in a loop on the given number of threads and return the total number of completions
+    static long runConcurrently(int threads, int seconds, Task task) throws InterruptedException {
+        AtomicLong done = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    try {
+                        task.run();
+                        done.incrementAndGet();
+                    } catch (SQLException e) {
+                        if (failures.getAndIncrement() == 0) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            });
+            workers.add(t);
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        if (failures.get() > 0) {
+            System.out.println("  failures=" + failures.get());
+        }
+        return done.get();
+    }
+
+    // Execute a plain SQL script: strips -- comments and splits statements on ';'
+    static void runSqlScript(Connection conn, Path script) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (String line : Files.readAllLines(script)) {
+            int comment = line.indexOf("--");
+            sql.append(comment >= 0 ? line.substring(0, comment) : line).append('\n');
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : sql.toString().split(";")) {
+                if (!statement.isBlank()) {
+                    stmt.execute(statement.trim());
+                }
+            }
+        }
+        if (!conn.getAutoCommit()) {
+            conn.commit();
+        }
+    }
+}
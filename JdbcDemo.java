@@ -1,19 +1,117 @@
 
 // Import required packages
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
 import java.sql.*;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class JdbcDemo {
 
     // JDBC driver name and database URL
     static final String JDBC_DRIVER = "com.mysql.cj.jdbc.Driver";
-    static final String DB_URL = "jdbc:mysql://localhost:3306/companydb?allowPublicKeyRetrieval=true&useSSL=false";
+    static final String DB_URL = "jdbc:mysql://localhost:3306/companydb?allowPublicKeyRetrieval=true&useSSL=false&rewriteBatchedStatements=true";
 
     // Database credentials
     static final String USER = "daksh"; // add your user
     static final String PASSWORD = "root"; // add password
 
+    // Connection pool settings (override with -Dpool.minSize=... etc.)
+    static final int POOL_MIN_SIZE = Integer.getInteger("pool.minSize", 1);
+    static final int POOL_MAX_SIZE = Integer.getInteger("pool.maxSize", 8);
+    static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("pool.idleTimeoutMs", 300_000L);
+    static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("pool.borrowTimeoutMs", 5_000L);
+    static final int STATEMENT_CACHE_SIZE = Integer.getInteger("pool.statementCacheSize", 64); // 0 disables
+
+    // Shared input for all operations: the console, or the current line of a script
+    static InputReader in = new InputReader(new BufferedReader(new InputStreamReader(System.in)), true);
+
+    // Outcome of the last mutation, read by ScriptRunner
+    static DataAccess.Outcome lastOutcome;
+
+    // Replica routing for read-only menu operations; null when no replicas are configured
+    static ReplicaRouter router;
+
+    // Student/StudentCourses partitioned across several databases; null when sharding is off
+    static ShardedDataAccess shards;
+
+    // Journal of committed mutations; null when journal.dir is unset
+    static MutationJournal journal;
+
+    // CommitPolicy's savepoint for the running menu operation, reused by the operation's first
+    // forStudent/forReferenceData call only (see takeOperationSavepoint)
+    private static Savepoint operationSavepoint;
+
+    // Menu choices that only read
+    private static final Set<Integer> READ_ONLY_CHOICES = Set.of(11, 12, 17, 20, 21, 22, 23, 24, 25, 29, 34, 38, 39);
+    // Read-only choices served from in-memory state shared with the primary (report counters,
+    // snapshot, name index); a replica baseline would be patched with primary deltas
+    private static final Set<Integer> PRIMARY_STATE_CHOICES = Set.of(23, 24, 25);
+    // Menu choices that write
+    private static final Set<Integer> MUTATION_CHOICES = Set.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 13, 14, 15, 16, 18, 19, 26, 32, 33);
+
+    // Menu choices that commit chunk by chunk (BulkOperations)
+    private static final Set<Integer> BULK_CHOICES = Set.of(35, 36, 37);
+
+    // Menu choices that end the transaction themselves
+    static final int COMMIT_CHOICE = 27;
+    static final int ROLLBACK_CHOICE = 28;
+
+    // Menu labels; choice N is MENU[N - 1]
+    private static final String[] MENU = {
+            "Add a Student",
+            "Add a College",
+            "Add a Course",
+            "Add Student to College",
+            "Update College Choice for Student",
+            "Delete Student from College",
+            "Delete Course",
+            "Delete Student",
+            "Delete College",
+            "Update College Fee",
+            "Print All Students of a College",
+            "Print All Courses of a College",
+            "Add New College and Update Student Choice",
+            "Add Course to College",
+            "Enroll Student in Course",
+            "Remove Student from Course",
+            "Print Student's Enrolled Courses",
+            "Update Student Details",
+            "Update Course Details",
+            "Print All Students",
+            "Print All Colleges",
+            "Print All Courses",
+            "Report: Students per College",
+            "Report: Average Age per College",
+            "Search Students by Name",
+            "Remove Course from College",
+            "Commit Changes",
+            "Rollback to Last Commit",
+            "Browse Table by Page",
+            "Show Performance Statistics",
+            "Refresh Report Snapshot",
+            "Add Course Prerequisite",
+            "Remove Course Prerequisite",
+            "Print Course Prerequisites",
+            "Bulk Delete Students",
+            "Bulk Move Students to College",
+            "Delete College in Chunks",
+            "Print Details of Several Students",
+            "Print Students of Several Colleges"
+    };
+
+    // Create a connection pool using the settings above
+    static ConnectionPool createPool() throws SQLException {
+        return new ConnectionPool(DB_URL, USER, PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                POOL_IDLE_TIMEOUT_MS, POOL_BORROW_TIMEOUT_MS, STATEMENT_CACHE_SIZE);
+    }
+
     public static void main(String[] args) {
+        ConnectionPool pool = null;
         Connection conn = null;
         Statement stmt = null;
         try {
@@ -22,62 +120,114 @@ public class JdbcDemo {
 
             // Open a connection
             System.out.println("Connecting to database...");
-            conn = DriverManager.getConnection(DB_URL, USER, PASSWORD);
+            pool = createPool();
+            conn = Instrumentation.wrap(pool.borrow());
+            Instrumentation.startPeriodicDump();
+
+            // Bulk load mode: java JdbcDemo import <student|college|course|enrollment> <file>
+            if (args.length >= 3 && args[0].equals("import")) {
+                BulkImporter.run(conn, args[1], Path.of(args[2]));
+                return;
+            }
+            if (args.length >= 3 && args[0].equals("export")) {
+                TableExporter.run(conn, args[1], Path.of(args[2]));
+                return;
+            }
+            // Journal replay: java JdbcDemo replay <journal dir> <jdbc url of the target database>
+            if (args.length >= 1 && args[0].equals("replay")) {
+                if (args.length < 3) {
+                    System.out.println("Usage: java JdbcDemo replay <journal dir> <jdbc url of the target database>");
+                    return;
+                }
+                if (args[2].equals(DB_URL)) {
+                    // the journal already describes this database; replaying would apply every mutation twice
+                    System.out.println("Refusing to replay the journal into its source database " + DB_URL);
+                    return;
+                }
+                try (Connection target = DriverManager.getConnection(args[2], USER, PASSWORD)) {
+                    target.setAutoCommit(false);
+                    MutationJournal.replay(target, Path.of(args[1]));
+                }
+                return;
+            }
+            // Synthetic data set: java JdbcDemo generate (sizes in DataGenerator's gen.* properties)
+            if (args.length >= 1 && args[0].equals("generate")) {
+                conn.close();
+                conn = null;
+                DataGenerator.run(pool);
+                return;
+            }
+            // Multi-user mode: java JdbcDemo serve [port]; every request borrows its own connection
+            if (args.length >= 1 && args[0].equals("serve")) {
+                conn.close();
+                conn = null;
+                HttpService.run(pool, args.length >= 2 ? Integer.parseInt(args[1]) : HttpService.DEFAULT_PORT);
+                return;
+            }
+
             conn.setAutoCommit(false); // Manage transactions manually
             stmt = conn.createStatement();
+            router = ReplicaRouter.fromProperties();
+            if (ShardedDataAccess.ENABLED && (ReportCounters.ENABLED || StudentSnapshot.ENABLED || NameSearchIndex.ENABLED)) {
+                // each of these keeps one in-memory copy of Student, loaded through a single connection
+                System.out.println("shard.urls cannot be combined with reports.incremental, snapshot.reports or search.index");
+                return;
+            }
+            if (ShardedDataAccess.ENABLED && MutationJournal.ENABLED) {
+                // shard writes commit on their own, outside the journaled transaction
+                System.out.println("shard.urls cannot be combined with journal.dir");
+                return;
+            }
+            journal = MutationJournal.startFromProperties();
+            if (journal != null) {
+                System.out.println(journal.warmUp());
+            }
+            shards = ShardedDataAccess.fromProperties();
+            if (shards != null) {
+                System.out.println("Sharded across " + shards.size() + " databases; every operation commits on its own shards.");
+            }
+
+            // Headless mode: java JdbcDemo script <file>
+            if (args.length >= 2 && args[0].equals("script")) {
+                ScriptRunner.run(conn, Path.of(args[1]));
+                return;
+            }
 
             // Menu loop
-            Scanner sc = new Scanner(System.in);
-            while (true) {
-                displayMenu();
-                System.out.print("Enter your choice: ");
-                int choice = getIntInput(sc);
-
-                switch (choice) {
-                    case 1 -> addStudent(conn);
-                    case 2 -> addCollege(conn);
-                    case 3 -> addCourse(conn);
-                    case 4 -> addStudentToCollege(conn);
-                    case 5 -> updateCollegeChoice(conn);
-                    case 6 -> deleteStudentFromCollege(conn);
-                    case 7 -> deleteCourse(conn);
-                    case 8 -> deleteStudent(conn);
-                    case 9 -> deleteCollege(conn);
-                    case 10 -> updateCollegeFee(conn);
-                    case 11 -> printAllStudentsOfCollege(conn);
-                    case 12 -> printAllCoursesOfCollege(conn);
-                    case 13 -> addNewCollegeAndUpdateStudentChoice(conn);
-                    case 14 -> addCourseToCollege(conn);
-                    case 15 -> enrollStudentInCourse(conn);
-                    case 16 -> removeStudentFromCourse(conn);
-                    case 17 -> printStudentEnrolledCourses(conn);
-                    case 18 -> updateStudentDetails(conn);
-                    case 19 -> updateCourseDetails(conn);
-                    case 20 -> printAllStudents(conn);
-                    case 21 -> printAllColleges(conn);
-                    case 22 -> printAllCourses(conn);
-                    case 23 -> printStudentsPerCollegeReport(conn);
-                    case 24 -> printAverageAgePerCollegeReport(conn);
-                    case 25 -> searchStudentsByName(conn);
-                    case 26 -> removeCourseFromCollege(conn);
-                    case 27 -> {
-                        System.out.println("Committing changes...");
-                        conn.commit();
-                    }
-                    case 28 -> {
-                        System.out.println("Rolling back to last commit...");
-                        conn.rollback();
-                    }
-                    default -> {
-                        System.out.println("Exiting program...");
-                        return;
+            CommitPolicy policy = CommitPolicy.fromProperties();
+            try {
+                while (true) {
+                    displayMenu();
+                    System.out.print("Enter your choice: ");
+                    int choice = getIntInput();
+                    try {
+                        if (!dispatch(conn, choice, policy)) {
+                            break;
+                        }
+                    } catch (SQLException e) {
+                        if (!CommitPolicy.SAVEPOINTS) throw e;
+                        System.out.println("Operation failed and was rolled back: " + e.getMessage());
+                        if (TransactionRetry.classify(e) == TransactionRetry.Failure.DEADLOCK) {
+                            // the server ended the whole transaction, not just this operation
+                            System.out.println("Deadlock: uncommitted operations before this one were rolled back too.");
+                        }
                     }
                 }
+            } catch (InputReader.InputException e) {
+                System.out.println("Exiting program...");
+            }
+            if (policy.isAutomatic()) {
+                policy.commit(conn); // the policy promised these operations would be committed
             }
-        } catch (SQLException | ClassNotFoundException e) {
+            System.out.println(policy.stats());
+        } catch (SQLException | ClassNotFoundException | IOException e) {
             e.printStackTrace();
             try {
                 if (conn != null) conn.rollback();
+                ReferenceDataCache.rolledBack();
+                ReportCounters.rolledBack();
+                MutationJournal.rolledBack();
+                NameSearchIndex.rolledBack();
             } catch (SQLException ex) {
                 ex.printStackTrace();
             }
@@ -89,54 +239,233 @@ public class JdbcDemo {
             } catch (SQLException se) {
                 se.printStackTrace();
             }
+            if (pool != null) {
+                System.out.println(pool.stats());
+                System.out.println(ReferenceDataCache.stats());
+                System.out.println(TransactionRetry.DEFAULT.stats());
+                if (shards != null) {
+                    System.out.println(shards.stats());
+                    shards.close();
+                }
+                if (router != null) {
+                    System.out.println(router.stats());
+                    router.close();
+                }
+                if (journal != null) {
+                    System.out.println(journal.stats());
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                Instrumentation.dumpToFile();
+                pool.close();
+            }
         }
         System.out.println("End of Code");
     }
 
+    // Run one menu operation under the commit policy; returns false when the choice means exit
+    static boolean dispatch(Connection conn, int choice, CommitPolicy policy) throws SQLException {
+        if (choice == COMMIT_CHOICE || choice == ROLLBACK_CHOICE) {
+            boolean result = dispatch(conn, choice);
+            policy.reset();
+            return result;
+        }
+        if (router != null && replicaSafe(choice) && router.readFromReplica()) {
+            Connection replica = router.borrowReplica();
+            if (replica != null) {
+                try (replica) {
+                    return ReferenceDataCache.bypass(c -> dispatch(c, choice), replica);
+                }
+            }
+        }
+        if (BULK_CHOICES.contains(choice)) {
+            if (shards != null) {
+                System.out.println("Bulk operations are not available with shard.urls set.");
+                return true;
+            }
+            policy.commit(conn); // the job commits its chunks, and pending work with the first
+            if (router != null) router.wrote();
+            try {
+                return dispatch(conn, choice);
+            } finally {
+                policy.reset();
+                if (router != null) router.committed();
+            }
+        }
+        if (router != null && MUTATION_CHOICES.contains(choice)) {
+            router.wrote(); // before running: the policy may commit at the end of the operation
+        }
+        return policy.run(conn, savepoint -> {
+            operationSavepoint = savepoint;
+            try {
+                return dispatch(conn, choice);
+            } finally {
+                operationSavepoint = null;
+            }
+        });
+    }
+
+    // Whether a choice may read from a replica
+    private static boolean replicaSafe(int choice) {
+        if (!READ_ONLY_CHOICES.contains(choice)) {
+            return false;
+        }
+        boolean sharedState = ReportCounters.ENABLED || StudentSnapshot.ENABLED || NameSearchIndex.ENABLED;
+        return !(sharedState && PRIMARY_STATE_CHOICES.contains(choice));
+    }
+
+    // Run one menu operation; returns false when the choice means exit
+    static boolean dispatch(Connection conn, int choice) throws SQLException {
+        if (choice < 1 || choice > MENU.length) {
+            System.out.println("Exiting program...");
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            runChoice(conn, choice);
+        } finally {
+            Instrumentation.recordOperation(MENU[choice - 1], System.nanoTime() - start);
+        }
+        return true;
+    }
+
+    private static void runChoice(Connection conn, int choice) throws SQLException {
+        switch (choice) {
+            case 1 -> addStudent(conn);
+            case 2 -> addCollege(conn);
+            case 3 -> addCourse(conn);
+            case 4 -> addStudentToCollege(conn);
+            case 5 -> updateCollegeChoice(conn);
+            case 6 -> deleteStudentFromCollege(conn);
+            case 7 -> deleteCourse(conn);
+            case 8 -> deleteStudent(conn);
+            case 9 -> deleteCollege(conn);
+            case 10 -> updateCollegeFee(conn);
+            case 11 -> printAllStudentsOfCollege(conn);
+            case 12 -> printAllCoursesOfCollege(conn);
+            case 13 -> addNewCollegeAndUpdateStudentChoice(conn);
+            case 14 -> addCourseToCollege(conn);
+            case 15 -> enrollStudentInCourse(conn);
+            case 16 -> removeStudentFromCourse(conn);
+            case 17 -> printStudentEnrolledCourses(conn);
+            case 18 -> updateStudentDetails(conn);
+            case 19 -> updateCourseDetails(conn);
+            case 20 -> printAllStudents(conn);
+            case 21 -> printAllColleges(conn);
+            case 22 -> printAllCourses(conn);
+            case 23 -> printStudentsPerCollegeReport(conn);
+            case 24 -> printAverageAgePerCollegeReport(conn);
+            case 25 -> searchStudentsByName(conn);
+            case 26 -> removeCourseFromCollege(conn);
+            case COMMIT_CHOICE -> {
+                System.out.println("Committing changes...");
+                conn.commit();
+                ReferenceDataCache.committed();
+                NameSearchIndex.committed();
+                ReportCounters.committed();
+                MutationJournal.committed();
+                if (router != null) router.committed();
+            }
+            case ROLLBACK_CHOICE -> {
+                System.out.println("Rolling back to last commit...");
+                conn.rollback();
+                ReferenceDataCache.rolledBack();
+                ReportCounters.rolledBack();
+                MutationJournal.rolledBack();
+                NameSearchIndex.rolledBack();
+                if (router != null) router.rolledBack();
+            }
+            case 29 -> browseTableByPage(conn);
+            case 30 -> System.out.print(Instrumentation.report());
+            case 31 -> {
+                ReportCounters.invalidate();
+                System.out.println(StudentSnapshot.refresh(conn).describe());
+            }
+            case 32 -> addCoursePrerequisite(conn);
+            case 33 -> removeCoursePrerequisite(conn);
+            case 34 -> printCoursePrerequisites(conn);
+            case 35 -> bulkDeleteStudents(conn);
+            case 36 -> bulkMoveStudents(conn);
+            case 37 -> deleteCollegeInChunks(conn);
+            case 38 -> printStudentDetails(conn);
+            case 39 -> printStudentsOfColleges(conn);
+            default -> throw new IllegalArgumentException("Unknown menu choice: " + choice);
+        }
+    }
+
     private static void displayMenu() {
         System.out.println("\n--- Menu ---");
-        System.out.println("1. Add a Student");
-        System.out.println("2. Add a College");
-        System.out.println("3. Add a Course");
-        System.out.println("4. Add Student to College");
-        System.out.println("5. Update College Choice for Student");
-        System.out.println("6. Delete Student from College");
-        System.out.println("7. Delete Course");
-        System.out.println("8. Delete Student");
-        System.out.println("9. Delete College");
-        System.out.println("10. Update College Fee");
-        System.out.println("11. Print All Students of a College");
-        System.out.println("12. Print All Courses of a College");
-        System.out.println("13. Add New College and Update Student Choice");
-        System.out.println("14. Add Course to College");
-        System.out.println("15. Enroll Student in Course");
-        System.out.println("16. Remove Student from Course");
-        System.out.println("17. Print Student's Enrolled Courses");
-        System.out.println("18. Update Student Details");
-        System.out.println("19. Update Course Details");
-        System.out.println("20. Print All Students");
-        System.out.println("21. Print All Colleges");
-        System.out.println("22. Print All Courses");
-        System.out.println("23. Report: Students per College");
-        System.out.println("24. Report: Average Age per College");
-        System.out.println("25. Search Students by Name");
-        System.out.println("26. Remove Course from College");
-        System.out.println("27. Commit Changes");
-        System.out.println("28. Rollback to Last Commit");
+        for (int i = 0; i < MENU.length; i++) {
+            System.out.println((i + 1) + ". " + MENU[i]);
+        }
         System.out.println("Any other number: Exit");
     }
 
     // Helper to get integer input with validation
-    private static int getIntInput(Scanner sc) {
-        while (!sc.hasNextInt()) {
-            System.out.println("Invalid input. Enter a number:");
-            sc.next();
+    private static int getIntInput() {
+        return in.nextInt();
+    }
+
+    // Helper to get a single-word input
+    private static String getWordInput() {
+        String word = in.next();
+        if (word == null) {
+            throw new InputReader.InputException("Missing argument");
+        }
+        return word;
+    }
+
+    // Prompts are only shown to a person at the console
+    private static void prompt(String text) {
+        if (in.isInteractive()) {
+            System.out.print(text);
         }
-        return sc.nextInt();
+    }
+
+    // Print the outcome of a mutation and remember it for the script summary
+    private static void report(DataAccess.Outcome outcome) {
+        lastOutcome = outcome;
+        System.out.println(outcome.message);
+    }
+
+    // Run a write for one student on the given connection (retried after a lock wait timeout),
+    // or on the student's shard
+    private static <T> T forStudent(Connection conn, int studentId, ShardedDataAccess.ShardTask<T> task) throws SQLException {
+        return shards != null ? shards.forStudent(studentId, task)
+                : TransactionRetry.DEFAULT.inOpenTransaction(conn, takeOperationSavepoint(), task::run);
+    }
+
+    // Read one student's rows on the given connection, or on the student's shard
+    private static <T> T readStudent(Connection conn, int studentId, ShardedDataAccess.ShardTask<T> read) throws SQLException {
+        return shards != null ? shards.forStudent(studentId, read) : read.run(conn);
+    }
+
+    // Write College, Courses, CollegeCourses or CoursePrerequisites on the given connection
+    // (retried after a lock wait timeout), or on every shard
+    private static DataAccess.Outcome forReferenceData(Connection conn, ShardedDataAccess.ShardTask<DataAccess.Outcome> write) throws SQLException {
+        return shards != null ? shards.forReferenceData(write)
+                : TransactionRetry.DEFAULT.inOpenTransaction(conn, takeOperationSavepoint(), write::run);
+    }
+
+    // The operation's savepoint, handed out once: rolling a later write of the same operation
+    // back to it (choice 13's student move) would also undo the earlier, already reported write,
+    // so later writes set savepoints of their own
+    private static Savepoint takeOperationSavepoint() {
+        Savepoint savepoint = operationSavepoint;
+        operationSavepoint = null;
+        return savepoint;
+    }
+
+    // Read College, Courses, CollegeCourses or CoursePrerequisites on the given connection, or on any shard
+    private static <T> T readReferenceData(Connection conn, ShardedDataAccess.ShardTask<T> read) throws SQLException {
+        return shards != null ? shards.readReferenceData(read) : read.run(conn);
     }
 
     // Helper to check if ID exists
-    private static boolean idExists(Connection conn, String table, String idColumn, int id) throws SQLException {
+    static boolean idExists(Connection conn, String table, String idColumn, int id) throws SQLException {
         String query = "SELECT 1 FROM " + table + " WHERE " + idColumn + " = ?";
         try (PreparedStatement pstmt = conn.prepareStatement(query)) {
             pstmt.setInt(1, id);
@@ -146,599 +475,451 @@ public class JdbcDemo {
     }
 
     static void addStudent(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student ID already exists.");
-            return;
-        }
-        System.out.print("Enter student name: ");
-        String studentName = sc.next();
-        System.out.print("Enter student age: ");
-        int studentAge = getIntInput(sc);
-        System.out.print("Enter college choice ID (or 0 for none): ");
-        int collegeIdChoice = getIntInput(sc);
-        if (collegeIdChoice != 0 && !idExists(conn, "College", "college_id", collegeIdChoice)) {
-            System.out.println("Invalid college ID.");
-            return;
-        }
-
-        String query = "INSERT INTO Student (student_id, student_name, student_age, college_id_choice) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, studentId);
-            pstmt.setString(2, studentName);
-            pstmt.setInt(3, studentAge);
-            pstmt.setObject(4, collegeIdChoice == 0 ? null : collegeIdChoice);
-            pstmt.executeUpdate();
-            System.out.println("Student added successfully!");
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        prompt("Enter student name: ");
+        String studentName = getWordInput();
+        prompt("Enter student age: ");
+        int studentAge = getIntInput();
+        prompt("Enter college choice ID (or 0 for none): ");
+        int collegeIdChoice = getIntInput();
+
+        report(forStudent(conn, studentId, c -> DataAccess.addStudent(c, studentId, studentName, studentAge, collegeIdChoice)));
     }
 
     static void addCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College ID already exists.");
-            return;
-        }
-        System.out.print("Enter college name: ");
-        String collegeName = sc.next();
-        System.out.print("Enter college fees: ");
-        int collegeFees = getIntInput(sc);
-
-        String query = "INSERT INTO College (college_id, college_name, college_fees) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            pstmt.setString(2, collegeName);
-            pstmt.setInt(3, collegeFees);
-            pstmt.executeUpdate();
-            System.out.println("College added successfully!");
-        }
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+        prompt("Enter college name: ");
+        String collegeName = getWordInput();
+        prompt("Enter college fees: ");
+        int collegeFees = getIntInput();
+
+        report(forReferenceData(conn, c -> DataAccess.addCollege(c, collegeId, collegeName, collegeFees)));
     }
 
     static void addCourse(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (idExists(conn, "Courses", "course_id", courseId)) {
-            System.out.println("Course ID already exists.");
-            return;
-        }
-        System.out.print("Enter course name: ");
-        String courseName = sc.next();
-        System.out.print("Enter course duration: ");
-        int courseDuration = getIntInput(sc);
-
-        String query = "INSERT INTO Courses (course_id, course_name, course_duration) VALUES (?, ?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, courseId);
-            pstmt.setString(2, courseName);
-            pstmt.setInt(3, courseDuration);
-            pstmt.executeUpdate();
-            System.out.println("Course added successfully!");
-        }
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
+        prompt("Enter course name: ");
+        String courseName = getWordInput();
+        prompt("Enter course duration: ");
+        int courseDuration = getIntInput();
+
+        report(forReferenceData(conn, c -> DataAccess.addCourse(c, courseId, courseName, courseDuration)));
     }
 
     static void addStudentToCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College not found.");
-            return;
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
 
-        String query = "UPDATE Student SET college_id_choice = ? WHERE student_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            pstmt.setInt(2, studentId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Student added to college successfully!");
-            }
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.addStudentToCollege(c, studentId, collegeId)));
     }
 
     static void updateCollegeChoice(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
-        System.out.print("Enter new college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College not found.");
-            return;
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        prompt("Enter new college ID: ");
+        int collegeId = getIntInput();
 
-        String query = "UPDATE Student SET college_id_choice = ? WHERE student_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            pstmt.setInt(2, studentId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("College choice updated successfully!");
-            }
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.updateCollegeChoice(c, studentId, collegeId)));
     }
 
     static void deleteStudentFromCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
 
-        String query = "UPDATE Student SET college_id_choice = NULL WHERE student_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, studentId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Student removed from college successfully!");
-            }
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.deleteStudentFromCollege(c, studentId)));
     }
 
     static void deleteCourse(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (!idExists(conn, "Courses", "course_id", courseId)) {
-            System.out.println("Course not found.");
-            return;
-        }
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
 
-        String query = "DELETE FROM Courses WHERE course_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, courseId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Course deleted successfully!");
-            }
-        }
+        report(forReferenceData(conn, c -> DataAccess.deleteCourse(c, courseId)));
     }
 
     static void deleteStudent(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
 
-        String query = "DELETE FROM Student WHERE student_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, studentId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Student deleted successfully!");
-            }
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.deleteStudent(c, studentId)));
     }
 
     static void deleteCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College not found.");
-            return;
-        }
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
 
-        String query = "DELETE FROM College WHERE college_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("College deleted successfully!");
-            }
-        }
+        report(forReferenceData(conn, c -> DataAccess.deleteCollege(c, collegeId)));
     }
 
     static void updateCollegeFee(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College not found.");
-            return;
-        }
-        System.out.print("Enter new fees: ");
-        int newFees = getIntInput(sc);
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+        prompt("Enter new fees: ");
+        int newFees = getIntInput();
 
-        String query = "UPDATE College SET college_fees = ? WHERE college_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, newFees);
-            pstmt.setInt(2, collegeId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("College fee updated successfully!");
-            }
-        }
+        report(forReferenceData(conn, c -> DataAccess.updateCollegeFee(c, collegeId, newFees)));
     }
 
     static void printAllStudentsOfCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+        List<DataAccess.Student> students = shards != null ? shards.studentsOfCollege(collegeId)
+                : DataAccess.studentsOfCollege(conn, collegeId);
+        if (students == null) {
             System.out.println("College not found.");
             return;
         }
 
-        String query = "SELECT * FROM Student WHERE college_id_choice = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            ResultSet rs = pstmt.executeQuery();
-            System.out.println("Students in College " + collegeId + ":");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("student_id") + ", Name: " + rs.getString("student_name") + ", Age: " + rs.getInt("student_age"));
-            }
+        System.out.println("Students in College " + collegeId + ":");
+        for (DataAccess.Student student : students) {
+            System.out.println("ID: " + student.id() + ", Name: " + student.name() + ", Age: " + student.age());
         }
     }
 
     static void printAllCoursesOfCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+        List<ReferenceDataCache.Course> courses = readReferenceData(conn, c -> DataAccess.coursesOfCollege(c, collegeId));
+        if (courses == null) {
             System.out.println("College not found.");
             return;
         }
 
-        String query = "SELECT c.course_id, c.course_name, c.course_duration FROM CollegeCourses cc JOIN Courses c ON cc.course_id = c.course_id WHERE cc.college_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            ResultSet rs = pstmt.executeQuery();
-            System.out.println("Courses in College " + collegeId + ":");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("course_id") + ", Name: " + rs.getString("course_name") + ", Duration: " + rs.getInt("course_duration"));
-            }
+        System.out.println("Courses in College " + collegeId + ":");
+        for (ReferenceDataCache.Course course : courses) {
+            System.out.println("ID: " + course.id() + ", Name: " + course.name() + ", Duration: " + course.duration());
         }
     }
 
     static void addNewCollegeAndUpdateStudentChoice(Connection conn) throws SQLException {
         addCollege(conn); // Add new college first
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter the new college ID to assign to student: ");
-        int collegeId = getIntInput(sc);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
+        prompt("Enter the new college ID to assign to student: ");
+        int collegeId = getIntInput();
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
 
-        String query = "UPDATE Student SET college_id_choice = ? WHERE student_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            pstmt.setInt(2, studentId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Student's college choice updated to new college!");
-            }
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.moveStudentToNewCollege(c, studentId, collegeId)));
     }
 
     static void addCourseToCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College not found.");
-            return;
-        }
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (!idExists(conn, "Courses", "course_id", courseId)) {
-            System.out.println("Course not found.");
-            return;
-        }
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
 
-        // Check if already added
-        String checkQuery = "SELECT 1 FROM CollegeCourses WHERE college_id = ? AND course_id = ?";
-        try (PreparedStatement checkPstmt = conn.prepareStatement(checkQuery)) {
-            checkPstmt.setInt(1, collegeId);
-            checkPstmt.setInt(2, courseId);
-            if (checkPstmt.executeQuery().next()) {
-                System.out.println("Course already added to college.");
-                return;
-            }
-        }
-
-        String query = "INSERT INTO CollegeCourses (college_id, course_id) VALUES (?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            pstmt.setInt(2, courseId);
-            pstmt.executeUpdate();
-            System.out.println("Course added to college successfully!");
-        }
+        report(forReferenceData(conn, c -> DataAccess.addCourseToCollege(c, collegeId, courseId)));
     }
 
     static void enrollStudentInCourse(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (!idExists(conn, "Courses", "course_id", courseId)) {
-            System.out.println("Course not found.");
-            return;
-        }
-
-        // Optional: Check if course is offered by student's college
-        String checkCollegeQuery = "SELECT 1 FROM Student s JOIN CollegeCourses cc ON s.college_id_choice = cc.college_id WHERE s.student_id = ? AND cc.course_id = ?";
-        try (PreparedStatement checkPstmt = conn.prepareStatement(checkCollegeQuery)) {
-            checkPstmt.setInt(1, studentId);
-            checkPstmt.setInt(2, courseId);
-            if (!checkPstmt.executeQuery().next()) {
-                System.out.println("Warning: Course may not be offered by student's college.");
-            }
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
 
-        // Check if already enrolled
-        String checkQuery = "SELECT 1 FROM StudentCourses WHERE student_id = ? AND course_id = ?";
-        try (PreparedStatement checkPstmt = conn.prepareStatement(checkQuery)) {
-            checkPstmt.setInt(1, studentId);
-            checkPstmt.setInt(2, courseId);
-            if (checkPstmt.executeQuery().next()) {
-                System.out.println("Student already enrolled in course.");
-                return;
-            }
-        }
-
-        String query = "INSERT INTO StudentCourses (student_id, course_id) VALUES (?, ?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, studentId);
-            pstmt.setInt(2, courseId);
-            pstmt.executeUpdate();
-            System.out.println("Student enrolled in course successfully!");
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.enrollStudentInCourse(c, studentId, courseId)));
     }
 
     static void removeStudentFromCourse(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (!idExists(conn, "Courses", "course_id", courseId)) {
-            System.out.println("Course not found.");
-            return;
-        }
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
 
-        String query = "DELETE FROM StudentCourses WHERE student_id = ? AND course_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, studentId);
-            pstmt.setInt(2, courseId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Student removed from course successfully!");
-            } else {
-                System.out.println("Enrollment not found.");
-            }
-        }
+        report(forStudent(conn, studentId, c -> DataAccess.removeStudentFromCourse(c, studentId, courseId)));
     }
 
     static void printStudentEnrolledCourses(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        List<ReferenceDataCache.Course> courses = readStudent(conn, studentId, c -> DataAccess.enrolledCourses(c, studentId));
+        if (courses == null) {
             System.out.println("Student not found.");
             return;
         }
 
-        String query = "SELECT c.course_id, c.course_name, c.course_duration FROM StudentCourses sc JOIN Courses c ON sc.course_id = c.course_id WHERE sc.student_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, studentId);
-            ResultSet rs = pstmt.executeQuery();
-            System.out.println("Enrolled Courses for Student " + studentId + ":");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("course_id") + ", Name: " + rs.getString("course_name") + ", Duration: " + rs.getInt("course_duration"));
-            }
+        System.out.println("Enrolled Courses for Student " + studentId + ":");
+        for (ReferenceDataCache.Course course : courses) {
+            System.out.println("ID: " + course.id() + ", Name: " + course.name() + ", Duration: " + course.duration());
         }
     }
 
     static void updateStudentDetails(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student ID: ");
-        int studentId = getIntInput(sc);
-        if (!idExists(conn, "Student", "student_id", studentId)) {
-            System.out.println("Student not found.");
-            return;
-        }
-        System.out.print("Enter new name (or press enter to skip): ");
-        sc.nextLine(); // Consume newline
-        String newName = sc.nextLine();
-        System.out.print("Enter new age (or 0 to skip): ");
-        int newAge = getIntInput(sc);
+        prompt("Enter student ID: ");
+        int studentId = getIntInput();
+        prompt("Enter new name (or press enter to skip): ");
+        String newName = in.nextText();
+        prompt("Enter new age (or 0 to skip): ");
+        int newAge = getIntInput();
+
+        report(forStudent(conn, studentId, c -> DataAccess.updateStudentDetails(c, studentId, newName, newAge)));
+    }
 
-        StringBuilder queryBuilder = new StringBuilder("UPDATE Student SET ");
-        boolean hasUpdate = false;
-        if (!newName.isEmpty()) {
-            queryBuilder.append("student_name = ?, ");
-            hasUpdate = true;
-        }
-        if (newAge > 0) {
-            queryBuilder.append("student_age = ?, ");
-            hasUpdate = true;
-        }
-        if (!hasUpdate) {
-            System.out.println("No updates provided.");
+    static void updateCourseDetails(Connection conn) throws SQLException {
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
+        prompt("Enter new name (or press enter to skip): ");
+        String newName = in.nextText();
+        prompt("Enter new duration (or 0 to skip): ");
+        int newDuration = getIntInput();
+
+        report(forReferenceData(conn, c -> DataAccess.updateCourseDetails(c, courseId, newName, newDuration)));
+    }
+
+    static void printAllStudents(Connection conn) throws SQLException {
+        System.out.println("All Students:");
+        if (shards != null) {
+            shards.streamStudents(JdbcDemo::printStudentRow);
             return;
         }
-        queryBuilder.delete(queryBuilder.length() - 2, queryBuilder.length()); // Remove last comma
-        queryBuilder.append(" WHERE student_id = ?");
+        TableListing.stream(conn, TableListing.Table.STUDENT, JdbcDemo::printStudentRow);
+    }
 
-        try (PreparedStatement pstmt = conn.prepareStatement(queryBuilder.toString())) {
-            int paramIndex = 1;
-            if (!newName.isEmpty()) pstmt.setString(paramIndex++, newName);
-            if (newAge > 0) pstmt.setInt(paramIndex++, newAge);
-            pstmt.setInt(paramIndex, studentId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Student details updated successfully!");
-            }
-        }
+    static void printAllColleges(Connection conn) throws SQLException {
+        System.out.println("All Colleges:");
+        readReferenceData(conn, c -> TableListing.stream(c, TableListing.Table.COLLEGE, JdbcDemo::printCollegeRow));
     }
 
-    static void updateCourseDetails(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (!idExists(conn, "Courses", "course_id", courseId)) {
-            System.out.println("Course not found.");
-            return;
-        }
-        System.out.print("Enter new name (or press enter to skip): ");
-        sc.nextLine(); // Consume newline
-        String newName = sc.nextLine();
-        System.out.print("Enter new duration (or 0 to skip): ");
-        int newDuration = getIntInput(sc);
+    static void printAllCourses(Connection conn) throws SQLException {
+        System.out.println("All Courses:");
+        readReferenceData(conn, c -> TableListing.stream(c, TableListing.Table.COURSES, JdbcDemo::printCourseRow));
+    }
 
-        StringBuilder queryBuilder = new StringBuilder("UPDATE Courses SET ");
-        boolean hasUpdate = false;
-        if (!newName.isEmpty()) {
-            queryBuilder.append("course_name = ?, ");
-            hasUpdate = true;
-        }
-        if (newDuration > 0) {
-            queryBuilder.append("course_duration = ?, ");
-            hasUpdate = true;
+    static void browseTableByPage(Connection conn) throws SQLException {
+        prompt("Enter table (1 = Students, 2 = Colleges, 3 = Courses): ");
+        int choice = getIntInput();
+        TableListing.Table table;
+        TableListing.RowHandler printer;
+        switch (choice) {
+            case 1 -> {
+                table = TableListing.Table.STUDENT;
+                printer = JdbcDemo::printStudentRow;
+            }
+            case 2 -> {
+                table = TableListing.Table.COLLEGE;
+                printer = JdbcDemo::printCollegeRow;
+            }
+            case 3 -> {
+                table = TableListing.Table.COURSES;
+                printer = JdbcDemo::printCourseRow;
+            }
+            default -> {
+                System.out.println("Invalid table.");
+                return;
+            }
         }
-        if (!hasUpdate) {
-            System.out.println("No updates provided.");
+        prompt("Start after ID (0 for the first page): ");
+        int afterId = getIntInput();
+        prompt("Page size: ");
+        int pageSize = getIntInput();
+        if (pageSize <= 0) {
+            System.out.println("Page size must be positive.");
             return;
         }
-        queryBuilder.delete(queryBuilder.length() - 2, queryBuilder.length()); // Remove last comma
-        queryBuilder.append(" WHERE course_id = ?");
 
-        try (PreparedStatement pstmt = conn.prepareStatement(queryBuilder.toString())) {
-            int paramIndex = 1;
-            if (!newName.isEmpty()) pstmt.setString(paramIndex++, newName);
-            if (newDuration > 0) pstmt.setInt(paramIndex++, newDuration);
-            pstmt.setInt(paramIndex, courseId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Course details updated successfully!");
+        int lastId;
+        if (shards != null && table == TableListing.Table.STUDENT) {
+            lastId = afterId;
+            for (DataAccess.Student student : shards.studentsPage(afterId, pageSize)) {
+                System.out.println("ID: " + student.id() + ", Name: " + student.name() + ", Age: " + student.age() + ", College: " + student.collegeId());
+                lastId = student.id();
             }
+        } else {
+            lastId = readReferenceData(conn, c -> TableListing.page(c, table, afterId, pageSize, printer));
+        }
+        if (lastId == afterId) {
+            System.out.println("No more rows.");
+        } else {
+            System.out.println("Next page: start after ID " + lastId);
         }
     }
 
-    static void printAllStudents(Connection conn) throws SQLException {
-        String query = "SELECT * FROM Student";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            System.out.println("All Students:");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("student_id") + ", Name: " + rs.getString("student_name") + ", Age: " + rs.getInt("student_age") + ", College: " + rs.getObject("college_id_choice"));
-            }
-        }
+    private static void printStudentRow(ResultSet rs) throws SQLException {
+        System.out.println("ID: " + rs.getInt("student_id") + ", Name: " + rs.getString("student_name") + ", Age: " + rs.getInt("student_age") + ", College: " + rs.getObject("college_id_choice"));
     }
 
-    static void printAllColleges(Connection conn) throws SQLException {
-        String query = "SELECT * FROM College";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            System.out.println("All Colleges:");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("college_id") + ", Name: " + rs.getString("college_name") + ", Fees: " + rs.getInt("college_fees"));
-            }
-        }
+    private static void printCollegeRow(ResultSet rs) throws SQLException {
+        System.out.println("ID: " + rs.getInt("college_id") + ", Name: " + rs.getString("college_name") + ", Fees: " + rs.getInt("college_fees"));
     }
 
-    static void printAllCourses(Connection conn) throws SQLException {
-        String query = "SELECT * FROM Courses";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            System.out.println("All Courses:");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("course_id") + ", Name: " + rs.getString("course_name") + ", Duration: " + rs.getInt("course_duration"));
-            }
-        }
+    private static void printCourseRow(ResultSet rs) throws SQLException {
+        System.out.println("ID: " + rs.getInt("course_id") + ", Name: " + rs.getString("course_name") + ", Duration: " + rs.getInt("course_duration"));
     }
 
     static void printStudentsPerCollegeReport(Connection conn) throws SQLException {
-        String query = "SELECT college_id_choice, COUNT(*) AS num_students FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            System.out.println("Students per College Report:");
-            while (rs.next()) {
-                System.out.println("College ID: " + rs.getInt("college_id_choice") + ", Students: " + rs.getInt("num_students"));
-            }
+        System.out.println("Students per College Report:");
+        Map<Integer, Integer> report = shards != null ? shards.studentsPerCollege()
+                : ReportCounters.ENABLED ? ReportCounters.studentsPerCollege(conn)
+                : StudentSnapshot.ENABLED ? StudentSnapshot.current(conn).studentsPerCollege()
+                : DataAccess.studentsPerCollege(conn);
+        for (Map.Entry<Integer, Integer> row : report.entrySet()) {
+            System.out.println("College ID: " + row.getKey() + ", Students: " + row.getValue());
         }
     }
 
     static void printAverageAgePerCollegeReport(Connection conn) throws SQLException {
-        String query = "SELECT college_id_choice, AVG(student_age) AS avg_age FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
-            System.out.println("Average Age per College Report:");
-            while (rs.next()) {
-                System.out.println("College ID: " + rs.getInt("college_id_choice") + ", Avg Age: " + rs.getDouble("avg_age"));
-            }
+        System.out.println("Average Age per College Report:");
+        Map<Integer, Double> report = shards != null ? shards.averageAgePerCollege()
+                : ReportCounters.ENABLED ? ReportCounters.averageAgePerCollege(conn)
+                : StudentSnapshot.ENABLED ? StudentSnapshot.current(conn).averageAgePerCollege()
+                : DataAccess.averageAgePerCollege(conn);
+        for (Map.Entry<Integer, Double> row : report.entrySet()) {
+            System.out.println("College ID: " + row.getKey() + ", Avg Age: " + row.getValue());
         }
     }
 
     static void searchStudentsByName(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter student name (partial match): ");
-        String name = sc.nextLine();
+        prompt("Enter student name (partial match): ");
+        String name = in.nextText();
 
-        String query = "SELECT * FROM Student WHERE student_name LIKE ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, "%" + name + "%");
-            ResultSet rs = pstmt.executeQuery();
-            System.out.println("Search Results:");
-            while (rs.next()) {
-                System.out.println("ID: " + rs.getInt("student_id") + ", Name: " + rs.getString("student_name") + ", Age: " + rs.getInt("student_age") + ", College: " + rs.getObject("college_id_choice"));
-            }
+        System.out.println("Search Results:");
+        List<DataAccess.Student> students = shards != null ? shards.searchStudentsByName(name, Integer.MAX_VALUE)
+                : DataAccess.searchStudentsByName(conn, name);
+        for (DataAccess.Student student : students) {
+            System.out.println("ID: " + student.id() + ", Name: " + student.name() + ", Age: " + student.age() + ", College: " + student.collegeId());
         }
     }
 
     static void removeCourseFromCollege(Connection conn) throws SQLException {
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter college ID: ");
-        int collegeId = getIntInput(sc);
-        if (!idExists(conn, "College", "college_id", collegeId)) {
-            System.out.println("College not found.");
-            return;
-        }
-        System.out.print("Enter course ID: ");
-        int courseId = getIntInput(sc);
-        if (!idExists(conn, "Courses", "course_id", courseId)) {
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
+
+        report(forReferenceData(conn, c -> DataAccess.removeCourseFromCollege(c, collegeId, courseId)));
+    }
+
+    static void addCoursePrerequisite(Connection conn) throws SQLException {
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
+        prompt("Enter prerequisite course ID: ");
+        int prerequisiteId = getIntInput();
+
+        report(forReferenceData(conn, c -> DataAccess.addPrerequisite(c, courseId, prerequisiteId)));
+    }
+
+    static void removeCoursePrerequisite(Connection conn) throws SQLException {
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
+        prompt("Enter prerequisite course ID: ");
+        int prerequisiteId = getIntInput();
+
+        report(forReferenceData(conn, c -> DataAccess.removePrerequisite(c, courseId, prerequisiteId)));
+    }
+
+    static void printCoursePrerequisites(Connection conn) throws SQLException {
+        prompt("Enter course ID: ");
+        int courseId = getIntInput();
+        List<ReferenceDataCache.Course> courses = readReferenceData(conn, c -> DataAccess.prerequisitesOf(c, courseId));
+        if (courses == null) {
             System.out.println("Course not found.");
             return;
         }
 
-        String query = "DELETE FROM CollegeCourses WHERE college_id = ? AND course_id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setInt(1, collegeId);
-            pstmt.setInt(2, courseId);
-            int rows = pstmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Course removed from college successfully!");
-            } else {
-                System.out.println("Association not found.");
+        System.out.println("Prerequisites of Course " + courseId + " (direct and indirect):");
+        for (ReferenceDataCache.Course course : courses) {
+            System.out.println("ID: " + course.id() + ", Name: " + course.name() + ", Duration: " + course.duration());
+        }
+        if (readReferenceData(conn, c -> ReferenceDataCache.prerequisites(c).isCyclic(courseId))) {
+            System.out.println("Course " + courseId + " requires itself through a prerequisite cycle and can never be taken.");
+        }
+    }
+
+    // Which students a bulk operation applies to
+    private static int[] getIdListInput(String kind) {
+        String list = getWordInput();
+        try {
+            return Arrays.stream(list.split(",")).filter(id -> !id.isBlank()).mapToInt(id -> Integer.parseInt(id.trim())).toArray();
+        } catch (NumberFormatException e) {
+            throw new InputReader.InputException("Invalid " + kind + " ID list: " + list);
+        }
+    }
+
+    private static BulkOperations.Selection getSelectionInput() {
+        prompt("Select students by 1) ID range, 2) ID list, 3) college: ");
+        int kind = getIntInput();
+        switch (kind) {
+            case 1 -> {
+                prompt("Enter first student ID: ");
+                int fromId = getIntInput();
+                prompt("Enter last student ID: ");
+                int toId = getIntInput();
+                return BulkOperations.Selection.range(fromId, toId);
+            }
+            case 2 -> {
+                prompt("Enter student IDs (comma separated): ");
+                return BulkOperations.Selection.ids(getIdListInput("student"));
+            }
+            case 3 -> {
+                prompt("Enter college ID: ");
+                return BulkOperations.Selection.college(getIntInput());
             }
+            default -> throw new InputReader.InputException("Unknown selection: " + kind);
         }
     }
+
+    static void bulkDeleteStudents(Connection conn) throws SQLException {
+        BulkOperations.Selection selection = getSelectionInput();
+
+        System.out.println("Deleted " + BulkOperations.deleteStudents(conn, selection).describe());
+    }
+
+    static void bulkMoveStudents(Connection conn) throws SQLException {
+        BulkOperations.Selection selection = getSelectionInput();
+        prompt("Enter target college ID (0 for none): ");
+        int collegeId = getIntInput();
+        if (collegeId != 0 && !ReferenceDataCache.collegeExists(conn, collegeId)) {
+            report(DataAccess.Outcome.COLLEGE_NOT_FOUND);
+            return;
+        }
+
+        System.out.println("Moved " + BulkOperations.moveStudents(conn, selection, collegeId == 0 ? null : collegeId).describe());
+    }
+
+    static void deleteCollegeInChunks(Connection conn) throws SQLException {
+        prompt("Enter college ID: ");
+        int collegeId = getIntInput();
+
+        report(BulkOperations.deleteCollege(conn, collegeId));
+    }
+
+    static void printStudentDetails(Connection conn) throws SQLException {
+        prompt("Enter student IDs (comma separated): ");
+        List<Integer> studentIds = Arrays.stream(getIdListInput("student")).boxed().toList();
+        Map<Integer, BatchLookup.StudentDetails> details = shards != null ? shards.studentDetails(studentIds)
+                : BatchLookup.students(conn, studentIds);
+
+        details.forEach((studentId, d) -> {
+            if (d == null) {
+                System.out.println("Student " + studentId + ": not found.");
+                return;
+            }
+            System.out.println("ID: " + studentId + ", Name: " + d.student().name() + ", Age: " + d.student().age()
+                    + ", College: " + (d.college() == null ? "none" : d.college().id() + " (" + d.college().name() + ")"));
+            for (ReferenceDataCache.Course course : d.courses()) {
+                System.out.println("  Course ID: " + course.id() + ", Name: " + course.name() + ", Duration: " + course.duration());
+            }
+        });
+    }
+
+    static void printStudentsOfColleges(Connection conn) throws SQLException {
+        prompt("Enter college IDs (comma separated): ");
+        List<Integer> collegeIds = Arrays.stream(getIdListInput("college")).boxed().toList();
+        Map<Integer, BatchLookup.CollegeStudents> colleges = shards != null ? shards.studentsOfColleges(collegeIds)
+                : BatchLookup.studentsOfColleges(conn, collegeIds);
+
+        colleges.forEach((collegeId, c) -> {
+            if (c == null) {
+                System.out.println("College " + collegeId + ": not found.");
+                return;
+            }
+            System.out.println("Students in College " + collegeId + " (" + c.college().name() + "):");
+            for (DataAccess.Student student : c.students()) {
+                System.out.println("  ID: " + student.id() + ", Name: " + student.name() + ", Age: " + student.age());
+            }
+        });
+    }
 }
@@ -0,0 +1,501 @@
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only binary journal of committed mutations, written to memory-mapped segment files.
+// DataAccess stages a compact record for every successful write (next to its ReportCounters
+// and cache hooks). A transaction's records are appended as one entry only when it commits
+// (menu choice 27, a CommitPolicy commit, or a TransactionRetry transaction such as a
+// BulkOperations chunk) and are dropped on rollback.
+//   -Djournal.dir=journal            directory of the segment files; off when unset
+//   -Djournal.segmentBytes=67108864  size of a segment file; when one is full the next is started
+//   -Djournal.sync=false             force every entry to disk. Otherwise the OS writes the pages
+//                                    back: a process crash loses nothing, a machine crash may lose the tail
+//
+// Entry layout (big endian): int body length, int CRC32 of the body, then the body.
+//   body          - byte kind, long commit time (epoch ms), then per kind:
+//   transaction   - short mutation count; per mutation: byte op code, the op's int fields, and a
+//                   text field if the op has one (short length + UTF-8, -1 for NULL); then
+//                   short count of ReportCounters deltas; per delta: int college,
+//                   long students, long ages, long age sum
+//   counters      - int count; per college: int college, long students, long ages, long age sum
+//   invalidated   - nothing more
+// The length is written last, so a reader never sees half an entry. A segment ends at the first
+// zero length. A bad checksum marks the torn tail left by a crash, which the next open overwrites.
+//
+// Uses:
+//   warm-up - ReportCounters baselines (when loaded) and their deltas (on commit) are journaled
+//             too. At startup the report aggregates are rebuilt from the last baseline plus the
+//             later deltas, without a GROUP BY over Student. Like ReportCounters itself this
+//             assumes writes from elsewhere are followed by menu choice 31, which journals
+//             "invalidated".
+//   replay  - java JdbcDemo replay <journal dir> <jdbc url> applies the journaled transactions
+//             through DataAccess to another database (never DB_URL), one transaction per entry
+// Staging is per process, like ReportCounters, so serve mode and sharding refuse journal.dir.
+// BulkImporter loads are not journaled.
+final class MutationJournal implements AutoCloseable {
+
+    static final String DIR = System.getProperty("journal.dir", "");
+    static final long SEGMENT_BYTES = Long.getLong("journal.segmentBytes", 64L << 20);
+    static final boolean SYNC = Boolean.getBoolean("journal.sync");
+    static final boolean ENABLED = !DIR.isBlank();
+
+    private static final int HEADER = 8; // length + checksum
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // Stored by ordinal: only add at the end
+    enum Kind { TRANSACTION, COUNTERS, INVALIDATED }
+
+    // Journaled mutations; codes are stored, so never renumber them
+    enum Op {
+        ADD_STUDENT(1, 3, true),          // student, age, college (0 = none); name
+        ADD_COLLEGE(2, 2, true),          // college, fees; name
+        ADD_COURSE(3, 2, true),           // course, duration; name
+        SET_COLLEGE_CHOICE(4, 2, false),  // student, college (0 = none)
+        DELETE_COURSE(5, 1, false),
+        DELETE_STUDENT(6, 1, false),
+        DELETE_COLLEGE(7, 1, false),
+        UPDATE_COLLEGE_FEE(8, 2, false),  // college, fees
+        ADD_COURSE_TO_COLLEGE(9, 2, false),
+        ENROLL(10, 2, false),             // student, course
+        UNENROLL(11, 2, false),           // student, course
+        REMOVE_COURSE_FROM_COLLEGE(12, 2, false),
+        ADD_PREREQUISITE(13, 2, false),   // course, prerequisite
+        REMOVE_PREREQUISITE(14, 2, false),
+        UPDATE_STUDENT(15, 2, true),      // student, age (0 = unchanged); name ("" = unchanged)
+        UPDATE_COURSE(16, 2, true);       // course, duration (0 = unchanged); name ("" = unchanged)
+
+        private static final Op[] BY_CODE = new Op[32];
+
+        static {
+            for (Op op : values()) BY_CODE[op.code] = op;
+        }
+
+        final byte code;
+        final int ints;
+        final boolean text;
+
+        Op(int code, int ints, boolean text) {
+            this.code = (byte) code;
+            this.ints = ints;
+            this.text = text;
+        }
+
+        static Op of(byte code) {
+            Op op = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+            if (op == null) throw new IllegalStateException("Unknown journal op code " + code);
+            return op;
+        }
+    }
+
+    record Mutation(Op op, String text, int[] values) {
+    }
+
+    // A decoded entry. counters holds the ReportCounters deltas of a transaction, or the totals
+    // of a COUNTERS entry (college id -> {students, ages, age sum}).
+    record Entry(Kind kind, long time, List<Mutation> mutations, Map<Integer, long[]> counters) {
+    }
+
+    interface EntryHandler {
+        void handle(Entry entry) throws SQLException;
+    }
+
+    // Staging for the transaction in progress on the journaling connection
+    private static MutationJournal current;
+    private static final List<Mutation> pending = new ArrayList<>();
+    private static Map<Integer, long[]> pendingCounters = Map.of();
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final boolean sync;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentNumber;
+    private long entries;
+    private long bytes;
+    private long segmentsStarted;
+    private long appendNanos;
+
+    MutationJournal(Path dir, long segmentBytes, boolean sync) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        Files.createDirectories(dir);
+        List<Path> segments = segments(dir);
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            openSegment(numberOf(last));
+            int end = 0;
+            for (int length; (length = entryLength(segment, end, crc)) > 0; ) {
+                end += HEADER + length;
+            }
+            if (end + 4 <= segment.limit() && segment.getInt(end) != 0) {
+                // torn tail: clear it so that nothing after the next entry looks like data
+                for (int i = end; i < segment.limit(); i++) segment.put(i, (byte) 0);
+            }
+            segment.position(end);
+        }
+    }
+
+    // Open journal.dir and journal this process's commits to it; null when the journal is off
+    static MutationJournal startFromProperties() throws IOException {
+        if (!ENABLED) return null;
+        MutationJournal journal = new MutationJournal(Path.of(DIR), SEGMENT_BYTES, SYNC);
+        synchronized (MutationJournal.class) {
+            current = journal;
+        }
+        return journal;
+    }
+
+    // Staging hooks, called by DataAccess after a successful write
+
+    static void record(Op op, int... values) {
+        record(op, null, values);
+    }
+
+    static synchronized void record(Op op, String text, int... values) {
+        if (current != null) pending.add(new Mutation(op, text, values));
+    }
+
+    // Position in the staged records, to drop an operation that is rolled back to a savepoint
+    static synchronized int mark() {
+        return pending.size();
+    }
+
+    static synchronized void discardFrom(int mark) {
+        if (mark < pending.size()) pending.subList(mark, pending.size()).clear();
+    }
+
+    // ReportCounters deltas folded by the commit that is about to be journaled
+    static synchronized void countersCommitted(Map<Integer, long[]> deltas) {
+        if (current == null || deltas.isEmpty()) return;
+        Map<Integer, long[]> copy = new HashMap<>();
+        deltas.forEach((college, delta) -> copy.put(college, delta.clone()));
+        pendingCounters = copy;
+    }
+
+    // A committed ReportCounters baseline; journaled at once
+    static synchronized void countersLoaded(Map<Integer, long[]> totals) {
+        if (current != null) current.appendOrStop(Kind.COUNTERS, List.of(), totals);
+    }
+
+    // The counters no longer follow the journal (writes from elsewhere, a failed operation)
+    static synchronized void countersInvalidated() {
+        if (current != null) current.appendOrStop(Kind.INVALIDATED, List.of(), Map.of());
+    }
+
+    // Append the staged records as one entry; call after conn.commit()
+    static synchronized void committed() {
+        if (current != null && (!pending.isEmpty() || !pendingCounters.isEmpty())) {
+            current.appendOrStop(Kind.TRANSACTION, pending, pendingCounters);
+        }
+        pending.clear();
+        pendingCounters = Map.of();
+    }
+
+    static synchronized void rolledBack() {
+        pending.clear();
+        pendingCounters = Map.of();
+    }
+
+    // Rebuild ReportCounters from the journal, or record that this run does not maintain them
+    String warmUp() throws IOException {
+        if (!ReportCounters.ENABLED) {
+            countersInvalidated(); // mutations of this run are not reflected in journaled counters
+            return "Journal " + dir + ": report counters not maintained in this run";
+        }
+        long start = System.nanoTime();
+        AtomicReference<Map<Integer, long[]>> state = new AtomicReference<>();
+        long[] read = new long[2]; // entries, entries since the last baseline
+        try {
+            read(dir, entry -> {
+                read[0]++;
+                read[1]++;
+                switch (entry.kind()) {
+                    case COUNTERS -> {
+                        state.set(new HashMap<>(entry.counters()));
+                        read[1] = 0;
+                    }
+                    case INVALIDATED -> state.set(null);
+                    case TRANSACTION -> {
+                        Map<Integer, long[]> totals = state.get();
+                        if (totals != null) entry.counters().forEach((college, delta) -> {
+                            long[] sum = totals.computeIfAbsent(college, k -> new long[3]);
+                            for (int i = 0; i < sum.length; i++) sum[i] += delta[i];
+                            if (sum[0] == 0) totals.remove(college);
+                        });
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException(e); // the handler does not touch the database
+        }
+        Map<Integer, long[]> totals = state.get();
+        String scanned = read[0] + " entries in " + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms";
+        if (totals == null) {
+            return "Journal " + dir + ": no current report counter baseline (" + scanned + ")";
+        }
+        ReportCounters.warm(totals);
+        return "Journal " + dir + ": report counters for " + totals.size() + " colleges rebuilt from a baseline and "
+                + read[1] + " later entries (" + scanned + ")";
+    }
+
+    // Appending
+
+    private void appendOrStop(Kind kind, List<Mutation> mutations, Map<Integer, long[]> counters) {
+        try {
+            append(kind, mutations, counters);
+        } catch (IOException | RuntimeException e) {
+            // a journal with a gap would replay and warm up wrongly; one that stops is only short
+            System.err.println("Journal write failed, journaling stopped: " + e);
+            current = null;
+            pending.clear();
+            pendingCounters = Map.of();
+        }
+    }
+
+    synchronized void append(Kind kind, List<Mutation> mutations, Map<Integer, long[]> counters) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer body = encode(kind, System.currentTimeMillis(), mutations, counters);
+        int length = body.remaining();
+        if (HEADER + length > segment.limit()) {
+            throw new IOException("Journal entry of " + length + " bytes does not fit in a segment");
+        }
+        if (segment.remaining() < HEADER + length) {
+            segment.force();
+            channel.close();
+            openSegment(segmentNumber + 1);
+        }
+        crc.reset();
+        crc.update(body.array(), 0, length);
+        int at = segment.position();
+        segment.position(at + HEADER);
+        segment.put(body);
+        segment.putInt(at + 4, (int) crc.getValue());
+        segment.putInt(at, length); // last: makes the entry visible
+        if (sync) {
+            segment.force(at, HEADER + length);
+        }
+        entries++;
+        bytes += HEADER + length;
+        appendNanos += System.nanoTime() - start;
+    }
+
+    private ByteBuffer encode(Kind kind, long time, List<Mutation> mutations, Map<Integer, long[]> counters) {
+        while (true) {
+            scratch.clear();
+            try {
+                scratch.put((byte) kind.ordinal());
+                scratch.putLong(time);
+                if (kind == Kind.TRANSACTION) {
+                    scratch.putShort(checkedShort(mutations.size()));
+                    for (Mutation mutation : mutations) {
+                        scratch.put(mutation.op().code);
+                        for (int i = 0; i < mutation.op().ints; i++) scratch.putInt(mutation.values()[i]);
+                        if (mutation.op().text) putText(mutation.text());
+                    }
+                    scratch.putShort(checkedShort(counters.size()));
+                } else if (kind == Kind.COUNTERS) {
+                    scratch.putInt(counters.size());
+                }
+                for (Map.Entry<Integer, long[]> college : counters.entrySet()) {
+                    scratch.putInt(college.getKey());
+                    for (long value : college.getValue()) scratch.putLong(value);
+                }
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    private void putText(String text) {
+        if (text == null) {
+            scratch.putShort((short) -1);
+            return;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        scratch.putShort(checkedShort(utf8.length));
+        scratch.put(utf8);
+    }
+
+    private static short checkedShort(int n) {
+        if (n > Short.MAX_VALUE) throw new IllegalArgumentException("Too many items for one journal entry: " + n);
+        return (short) n;
+    }
+
+    private void openSegment(int number) throws IOException {
+        Path path = dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size() > 0 ? channel.size() : segmentBytes;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentNumber = number;
+        segmentsStarted++;
+    }
+
+    // Reading
+
+    // Hand every entry of the journal in dir to the handler, oldest first; returns the number of entries
+    static long read(Path dir, EntryHandler handler) throws IOException, SQLException {
+        long entries = 0;
+        CRC32 crc = new CRC32();
+        for (Path path : segments(dir)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int at = 0;
+                for (int length; (length = entryLength(segment, at, crc)) > 0; at += HEADER + length) {
+                    handler.handle(decode(segment.slice(at + HEADER, length)));
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Body length of the entry at the given offset, or 0 at the end of the segment's valid entries
+    private static int entryLength(ByteBuffer segment, int at, CRC32 crc) {
+        if (at + HEADER > segment.limit()) return 0;
+        int length = segment.getInt(at);
+        if (length <= 0 || at + HEADER + length > segment.limit()) return 0;
+        crc.reset();
+        crc.update(segment.slice(at + HEADER, length));
+        return (int) crc.getValue() == segment.getInt(at + 4) ? length : 0;
+    }
+
+    private static Entry decode(ByteBuffer body) {
+        Kind kind = Kind.values()[body.get()];
+        long time = body.getLong();
+        List<Mutation> mutations = List.of();
+        int counters = 0;
+        if (kind == Kind.TRANSACTION) {
+            int n = body.getShort();
+            mutations = new ArrayList<>(n);
+            for (int m = 0; m < n; m++) {
+                Op op = Op.of(body.get());
+                int[] values = new int[op.ints];
+                for (int i = 0; i < values.length; i++) values[i] = body.getInt();
+                String text = null;
+                if (op.text) {
+                    int length = body.getShort();
+                    if (length >= 0) {
+                        byte[] utf8 = new byte[length];
+                        body.get(utf8);
+                        text = new String(utf8, StandardCharsets.UTF_8);
+                    }
+                }
+                mutations.add(new Mutation(op, text, values));
+            }
+            counters = body.getShort();
+        } else if (kind == Kind.COUNTERS) {
+            counters = body.getInt();
+        }
+        Map<Integer, long[]> totals = counters == 0 ? Map.of() : new HashMap<>();
+        for (int c = 0; c < counters; c++) {
+            totals.put(body.getInt(), new long[]{body.getLong(), body.getLong(), body.getLong()});
+        }
+        return new Entry(kind, time, mutations, totals);
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int numberOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Replay
+
+    // Apply every journaled transaction to conn through DataAccess, one transaction per entry
+    static void replay(Connection conn, Path dir) throws IOException, SQLException {
+        long start = System.nanoTime();
+        long[] counts = new long[3]; // transactions, mutations, rejected
+        read(dir, entry -> {
+            if (entry.kind() != Kind.TRANSACTION || entry.mutations().isEmpty()) return;
+            counts[2] += TransactionRetry.DEFAULT.transaction(conn, c -> {
+                int rejected = 0;
+                for (Mutation mutation : entry.mutations()) {
+                    if (!apply(c, mutation).success) rejected++;
+                }
+                return rejected;
+            });
+            counts[0]++;
+            counts[1] += entry.mutations().size();
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %d transactions, %d mutations in %.2fs (%.0f mutations/s); %d rejected%n",
+                counts[0], counts[1], seconds, counts[1] / Math.max(seconds, 1e-9), counts[2]);
+    }
+
+    static DataAccess.Outcome apply(Connection conn, Mutation mutation) throws SQLException {
+        int[] v = mutation.values();
+        return switch (mutation.op()) {
+            case ADD_STUDENT -> DataAccess.addStudent(conn, v[0], mutation.text(), v[1], v[2]);
+            case ADD_COLLEGE -> DataAccess.addCollege(conn, v[0], mutation.text(), v[1]);
+            case ADD_COURSE -> DataAccess.addCourse(conn, v[0], mutation.text(), v[1]);
+            case SET_COLLEGE_CHOICE -> v[1] == 0 ? DataAccess.deleteStudentFromCollege(conn, v[0])
+                    : DataAccess.updateCollegeChoice(conn, v[0], v[1]);
+            case DELETE_COURSE -> DataAccess.deleteCourse(conn, v[0]);
+            case DELETE_STUDENT -> DataAccess.deleteStudent(conn, v[0]);
+            case DELETE_COLLEGE -> DataAccess.deleteCollege(conn, v[0]);
+            case UPDATE_COLLEGE_FEE -> DataAccess.updateCollegeFee(conn, v[0], v[1]);
+            case ADD_COURSE_TO_COLLEGE -> DataAccess.addCourseToCollege(conn, v[0], v[1]);
+            case ENROLL -> DataAccess.enrollStudentInCourse(conn, v[0], v[1]);
+            case UNENROLL -> DataAccess.removeStudentFromCourse(conn, v[0], v[1]);
+            case REMOVE_COURSE_FROM_COLLEGE -> DataAccess.removeCourseFromCollege(conn, v[0], v[1]);
+            case ADD_PREREQUISITE -> DataAccess.addPrerequisite(conn, v[0], v[1]);
+            case REMOVE_PREREQUISITE -> DataAccess.removePrerequisite(conn, v[0], v[1]);
+            case UPDATE_STUDENT -> DataAccess.updateStudentDetails(conn, v[0], mutation.text(), v[1]);
+            case UPDATE_COURSE -> DataAccess.updateCourseDetails(conn, v[0], mutation.text(), v[1]);
+        };
+    }
+
+    // Bytes appended since the journal was opened
+    long bytes() {
+        return bytes;
+    }
+
+    String stats() {
+        return "Mutation journal [dir=" + dir + ", segment=" + segmentNumber + ", entries=" + entries
+                + ", bytes=" + bytes + ", segmentsStarted=" + segmentsStarted
+                + ", avgAppendUs=" + (entries == 0 ? 0 : appendNanos / entries / 1000) + "]";
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (MutationJournal.class) {
+            if (current == this) current = null;
+        }
+        synchronized (this) {
+            segment.force();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Trigram index over student names, so substring and prefix searches do not scan Student.
+// Every lower-cased name is split into overlapping 3-character grams, and each gram maps to a
+// sorted posting list of student ids. The name is indexed with a leading START marker as
+// well, which makes prefix grams (START + first two characters) searchable. A query
+// intersects the posting lists of its grams, starting with the shortest, and checks every
+// candidate against the stored name. Queries shorter than a gram fall back to a scan of the
+// in-memory names.
+//
+// The shared index is built on first use from the database and kept current by addStudent,
+// updateStudentDetails and deleteStudent; a rollback of a transaction that wrote students drops
+// it (it is rebuilt on next use).
+//   -Dsearch.index=true   serve searchStudentsByName from the index instead of LIKE '%x%'
+final class NameSearchIndex {
+
+    static final boolean ENABLED = Boolean.getBoolean("search.index");
+    private static final char START = '\u0002';
+
+    private static NameSearchIndex shared;
+
+    // Whether the current thread's open transaction has written students
+    private static final ThreadLocal<Boolean> wrote = ThreadLocal.withInitial(() -> false);
+
+    private final Map<Long, Postings> grams = new HashMap<>();
+    private final Map<Integer, String> names = new HashMap<>(); // id -> lower-cased name
+
+    // Sorted, duplicate-free list of student ids
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] < id) {
+                append(id);
+                return;
+            }
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        private void append(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) return;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+    // The shared index, built from the Student table on first use
+    static synchronized NameSearchIndex current(Connection conn) throws SQLException {
+        if (shared == null) {
+            shared = load(conn);
+        }
+        return shared;
+    }
+
+    static NameSearchIndex load(Connection conn) throws SQLException {
+        NameSearchIndex index = new NameSearchIndex();
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(TableListing.streamingFetchSize(conn));
+            try (ResultSet rs = stmt.executeQuery("SELECT student_id, student_name FROM Student ORDER BY student_id")) {
+                while (rs.next()) {
+                    index.add(rs.getInt(1), rs.getString(2));
+                }
+            }
+        }
+        return index;
+    }
+
+    // Maintenance hooks, called by DataAccess after a successful write
+
+    static synchronized void studentAdded(int studentId, String name) {
+        wrote.set(true);
+        if (shared != null) shared.add(studentId, name);
+    }
+
+    static synchronized void studentRenamed(int studentId, String name) {
+        wrote.set(true);
+        if (shared != null) shared.add(studentId, name);
+    }
+
+    static synchronized void studentDeleted(int studentId) {
+        wrote.set(true);
+        if (shared != null) shared.remove(studentId);
+    }
+
+    static synchronized void invalidate() {
+        shared = null;
+    }
+
+    // Transaction hooks: the index may hold (or have been built from) writes of the current
+    // thread's transaction, so it is dropped when they are undone. A transaction that wrote no
+    // students leaves it alone.
+
+    static void committed() {
+        wrote.set(false);
+    }
+
+    static void rolledBack() {
+        if (wrote.get()) {
+            invalidate();
+            wrote.set(false);
+        }
+    }
+
+    // One operation was rolled back to its savepoint; the rest of the transaction stays open
+    static void rolledBackToSavepoint() {
+        if (wrote.get()) {
+            invalidate();
+        }
+    }
+
+    // Index (or re-index) a student; a null name is not searchable, as with LIKE
+    synchronized void add(int studentId, String name) {
+        remove(studentId);
+        if (name == null) return;
+        String key = name.toLowerCase(Locale.ROOT);
+        names.put(studentId, key);
+        String padded = START + key;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.computeIfAbsent(gram(padded, i), k -> new Postings()).add(studentId);
+        }
+    }
+
+    synchronized void remove(int studentId) {
+        String key = names.remove(studentId);
+        if (key == null) return;
+        String padded = START + key;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            long gram = gram(padded, i);
+            Postings postings = grams.get(gram);
+            if (postings != null) {
+                postings.remove(studentId);
+                if (postings.size == 0) grams.remove(gram);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return names.size();
+    }
+
+    // Ids of up to limit students whose name contains text (case-insensitive), ascending
+    synchronized int[] search(String text, int limit) {
+        String key = text.toLowerCase(Locale.ROOT);
+        return find(key, key, false, limit);
+    }
+
+    // Ids of up to limit students whose name starts with prefix (case-insensitive), ascending
+    synchronized int[] searchPrefix(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        return find(START + key, key, true, limit);
+    }
+
+    private int[] find(String grammed, String key, boolean prefix, int limit) {
+        if (grammed.length() < 3) {
+            return scan(key, prefix, limit);
+        }
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= grammed.length(); i++) {
+            Postings postings = grams.get(gram(grammed, i));
+            if (postings == null) return new int[0];
+            if (!lists.contains(postings)) lists.add(postings);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        Postings smallest = lists.get(0);
+        int[] result = new int[Math.min(limit, smallest.size)];
+        int found = 0;
+        candidates:
+        for (int i = 0; i < smallest.size && found < result.length; i++) {
+            int id = smallest.ids[i];
+            for (int l = 1; l < lists.size(); l++) {
+                if (!lists.get(l).contains(id)) continue candidates;
+            }
+            String name = names.get(id);
+            if (prefix ? name.startsWith(key) : name.contains(key)) {
+                result[found++] = id;
+            }
+        }
+        return Arrays.copyOf(result, found);
+    }
+
+    private int[] scan(String key, boolean prefix, int limit) {
+        int[] matches = names.entrySet().stream()
+                .filter(e -> prefix ? e.getValue().startsWith(key) : e.getValue().contains(key))
+                .mapToInt(Map.Entry::getKey)
+                .sorted()
+                .toArray();
+        return matches.length > limit ? Arrays.copyOf(matches, limit) : matches;
+    }
+
+    // Three UTF-16 chars packed into one key
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,322 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Query plan inspector for the SQL the application issues.
+// Runs a workload through JdbcDemo.dispatch on an instrumented connection (the built-in
+// workload below, in both check-then-act and set-based mode, or a ScriptRunner style script that
+// does not commit: choices 27 and 35-37 are refused),
+// rolls it back, and then EXPLAINs every distinct statement Instrumentation saw, with 1 bound to
+// each parameter. Full table and index scans, filesorts and temporary tables are flagged, and an
+// index is suggested for a scanned table's predicate column when no index starts with it.
+//
+// The report has no timings or row estimates, so reports from two schema versions can be diffed.
+//
+// Usage: java PlanInspector [script] > plans.txt
+//   -Dexplain.url / explain.user / explain.password   default to JdbcDemo's settings
+public class PlanInspector {
+
+    static final String URL = System.getProperty("explain.url", JdbcDemo.DB_URL);
+    static final String USER = System.getProperty("explain.user", JdbcDemo.USER);
+    static final String PASSWORD = System.getProperty("explain.password", JdbcDemo.PASSWORD);
+
+    // One command per menu operation, against the sample rows of init_db.sql plus new ids 9001/9002
+    static final String[] WORKLOAD = {
+            "2 9001 PlanCollege 1000",
+            "3 9001 PlanCourse 4",
+            "1 9001 PlanStudent 20 9001",
+            "4 9001 1",
+            "5 9001 9001",
+            "13 9002 PlanCollege2 2000 9002 9001",
+            "14 9001 9001",
+            "15 9001 9001",
+            "15 1 2",
+            "17 9001",
+            "11 9001",
+            "12 1",
+            "10 9001 5000",
+            "18 9001 \"Plan Student\" 21",
+            "19 9001 \"Plan Course\" 5",
+            "32 9001 1", "15 2 9001", "34 9001", "33 9001 1",
+            "20", "21", "22", "23", "24",
+            "25 Plan",
+            "38 1,2,9001,99999", "39 1,9001,99999",
+            "29 1 0 5", "29 2 0 5", "29 3 0 5",
+            "16 9001 9001",
+            "26 9001 9001",
+            "4 99999 1",
+            "14 99999 9001",
+            "15 99999 1",
+            "16 99999 1",
+            "6 9001",
+            "8 9001",
+            "7 9001",
+            "9 9001",
+            "9 9002"
+    };
+
+    // Choices that commit (27, and the bulk jobs that commit chunk by chunk); a script using them
+    // would change the inspected database for real, so it is refused
+    private static final Set<Integer> COMMITTING_CHOICES = Set.of(JdbcDemo.COMMIT_CHOICE, 35, 36, 37);
+
+    record PlanRow(String table, String type, String key, String extra) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Class.forName(JdbcDemo.JDBC_DRIVER);
+        try (Connection physical = DriverManager.getConnection(URL, USER, PASSWORD)) {
+            Connection traced = Instrumentation.wrap(physical);
+            traced.setAutoCommit(false);
+            List<String> commands = args.length > 0 ? readScript(Path.of(args[0])) : List.of(WORKLOAD);
+            for (String command : commands) {
+                String choice = command.split("\\s+", 2)[0];
+                if (choice.matches("\\d{1,9}") && COMMITTING_CHOICES.contains(Integer.parseInt(choice))) {
+                    System.err.println("Refusing to inspect '" + command + "': choices " + COMMITTING_CHOICES
+                            + " commit, and the workload must be rolled back");
+                    return;
+                }
+            }
+            List<String> failures = new ArrayList<>();
+            boolean setBased = DataAccess.setBased;
+            PrintStream console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (boolean mode : args.length > 0 ? new boolean[]{setBased} : new boolean[]{false, true}) {
+                    DataAccess.setBased = mode;
+                    runWorkload(traced, commands, failures);
+                    traced.rollback();
+                    ReferenceDataCache.rolledBack();
+                    ReportCounters.rolledBack();
+                    NameSearchIndex.rolledBack();
+                }
+            } finally {
+                DataAccess.setBased = setBased;
+                System.setOut(console);
+            }
+            for (String failure : failures) {
+                System.err.println(failure);
+            }
+            physical.setAutoCommit(true);
+            System.out.print(report(physical, Instrumentation.statementTexts()));
+        }
+    }
+
+    private static List<String> readScript(Path script) throws IOException {
+        List<String> commands = new ArrayList<>();
+        for (String line : Files.readAllLines(script, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                commands.add(trimmed);
+            }
+        }
+        return commands;
+    }
+
+    private static void runWorkload(Connection conn, List<String> commands, List<String> failures) {
+        for (String command : commands) {
+            InputReader lineInput = InputReader.ofLine(command);
+            JdbcDemo.in = lineInput;
+            try {
+                JdbcDemo.dispatch(conn, lineInput.nextInt());
+            } catch (SQLException | InputReader.InputException e) {
+                failures.add("Workload command '" + command + "' failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // The plan report for the given statements, in the given order
+    static String report(Connection conn, List<String> statements) throws SQLException {
+        StringBuilder out = new StringBuilder();
+        Map<String, Set<String>> indexedColumns = new HashMap<>();
+        Set<String> suggestions = new TreeSet<>();
+        int flagged = 0;
+        out.append("=== Query plan report: ").append(statements.size()).append(" statements ===\n");
+        for (String sql : statements) {
+            out.append("\n-- ").append(sql).append('\n');
+            if (sql.regionMatches(true, 0, "INSERT", 0, 6) && !sql.toUpperCase(Locale.ROOT).contains("SELECT")) {
+                out.append("   (single-row insert, no plan)\n");
+                continue;
+            }
+            List<String> flags = new ArrayList<>();
+            try {
+                explain(conn, sql, indexedColumns, out, flags, suggestions);
+            } catch (SQLException e) {
+                out.append("   EXPLAIN failed: ").append(e.getMessage()).append('\n');
+                continue;
+            }
+            for (String flag : flags) {
+                out.append("   ! ").append(flag).append('\n');
+            }
+            if (!flags.isEmpty()) flagged++;
+        }
+        out.append("\n=== ").append(flagged).append(" of ").append(statements.size()).append(" statements flagged ===\n");
+        if (!suggestions.isEmpty()) {
+            out.append("Suggested indexes:\n");
+            for (String suggestion : suggestions) {
+                out.append("  ").append(suggestion).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static void explain(Connection conn, String sql, Map<String, Set<String>> indexedColumns,
+                                StringBuilder out, List<String> flags, Set<String> suggestions) throws SQLException {
+        Map<String, String> tables = tablesByAlias(sql);
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 1; i <= countParameters(sql); i++) {
+                pstmt.setInt(i, 1);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                Map<String, Integer> columns = new HashMap<>();
+                for (int c = 1; c <= meta.getColumnCount(); c++) {
+                    columns.put(meta.getColumnLabel(c).toLowerCase(Locale.ROOT), c);
+                }
+                while (rs.next()) {
+                    if (!columns.containsKey("type")) {
+                        // Not MySQL's tabular EXPLAIN (e.g. H2): show the plan text and look for scans
+                        String plan = rs.getString(1).replaceAll("\\s+", " ").trim();
+                        out.append("   ").append(plan).append('\n');
+                        if (plan.contains("tableScan")) flags.add("full table scan");
+                        continue;
+                    }
+                    PlanRow row = new PlanRow(value(rs, columns, "table"), value(rs, columns, "type"),
+                            value(rs, columns, "key"), value(rs, columns, "extra"));
+                    out.append("   ").append(row.table()).append(" type=").append(row.type())
+                            .append(" key=").append(row.key()).append(" extra=").append(row.extra()).append('\n');
+                    check(conn, sql, row, tables, indexedColumns, flags, suggestions);
+                }
+            }
+        }
+    }
+
+    private static void check(Connection conn, String sql, PlanRow row, Map<String, String> tables,
+                              Map<String, Set<String>> indexedColumns, List<String> flags, Set<String> suggestions) throws SQLException {
+        String table = tables.getOrDefault(row.table().toLowerCase(Locale.ROOT), row.table());
+        if (row.type().equals("ALL") || row.type().equals("index")) {
+            flags.add((row.type().equals("ALL") ? "full table scan of " : "full index scan of ") + table);
+            if (sql.toUpperCase(Locale.ROOT).matches(".*\\bLIKE\\s+\\?.*")) {
+                flags.add("LIKE ? with a leading wildcard cannot use a B-tree index (see NameSearchIndex)");
+            }
+            Set<String> indexed = indexedColumns.computeIfAbsent(table.toLowerCase(Locale.ROOT),
+                    k -> leadingIndexColumns(conn, table));
+            for (String column : predicateColumns(sql, row.table(), tables)) {
+                if (!indexed.contains(column.toLowerCase(Locale.ROOT))) {
+                    suggestions.add("CREATE INDEX idx_" + table.toLowerCase(Locale.ROOT) + "_" + column.toLowerCase(Locale.ROOT)
+                            + " ON " + table + " (" + column + ");");
+                    flags.add("no index starts with " + table + "." + column);
+                }
+            }
+        }
+        if (row.extra().contains("Using filesort")) flags.add("filesort on " + table);
+        if (row.extra().contains("Using temporary")) flags.add("temporary table for " + table);
+    }
+
+    private static String value(ResultSet rs, Map<String, Integer> columns, String name) throws SQLException {
+        Integer column = columns.get(name);
+        String value = column == null ? null : rs.getString(column);
+        return value == null ? "-" : value;
+    }
+
+    // Parameter markers outside string literals
+    static int countParameters(String sql) {
+        int count = 0;
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') quoted = !quoted;
+            else if (c == '?' && !quoted) count++;
+        }
+        return count;
+    }
+
+    private static final Pattern TABLE_REF = Pattern.compile(
+            "(?i)\\b(?:FROM|JOIN|UPDATE|INTO)\\s+(\\w+)(?:\\s+(?!WHERE\\b|ON\\b|SET\\b|JOIN\\b|ORDER\\b|GROUP\\b|LIMIT\\b|VALUES\\b|INNER\\b|LEFT\\b)(\\w+))?");
+    private static final Pattern PREDICATE = Pattern.compile(
+            "(?i)(?:\\b(\\w+)\\.)?\\b(\\w+)\\s*(?:=|<=|>=|<|>|\\bIN\\b|\\bLIKE\\b)");
+    private static final Pattern JOIN_RIGHT_SIDE = Pattern.compile("(?:=|<=|>=|<|>)\\s*(\\w+)\\.(\\w+)");
+
+    // alias (lower case) -> table name; every table is also its own alias
+    static Map<String, String> tablesByAlias(String sql) {
+        Map<String, String> tables = new LinkedHashMap<>();
+        Matcher m = TABLE_REF.matcher(sql);
+        while (m.find()) {
+            tables.put(m.group(1).toLowerCase(Locale.ROOT), m.group(1));
+            if (m.group(2) != null) {
+                tables.put(m.group(2).toLowerCase(Locale.ROOT), m.group(1));
+            }
+        }
+        return tables;
+    }
+
+    // Columns of the given table (by alias) compared in the WHERE/ON clauses
+    static Set<String> predicateColumns(String sql, String alias, Map<String, String> tables) {
+        Set<String> columns = new TreeSet<>();
+        int where = sql.toUpperCase(Locale.ROOT).indexOf(" WHERE ");
+        int on = sql.toUpperCase(Locale.ROOT).indexOf(" ON ");
+        int from = where < 0 ? on : on < 0 ? where : Math.min(where, on);
+        if (from < 0) return columns;
+        boolean singleTable = new HashSet<>(tables.values()).size() == 1;
+        Matcher right = JOIN_RIGHT_SIDE.matcher(sql.substring(from));
+        while (right.find()) {
+            if (right.group(1).equalsIgnoreCase(alias)) {
+                columns.add(right.group(2));
+            }
+        }
+        Matcher m = PREDICATE.matcher(sql.substring(from));
+        while (m.find()) {
+            String qualifier = m.group(1);
+            String column = m.group(2);
+            if (column.equalsIgnoreCase("WHERE") || column.equalsIgnoreCase("AND") || column.equalsIgnoreCase("ON")
+                    || column.equalsIgnoreCase("NOT") || column.matches("\\d+")) {
+                continue;
+            }
+            if (qualifier == null ? singleTable : qualifier.equalsIgnoreCase(alias)) {
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
+    // Lower-cased first columns of every index on the table (the primary key included)
+    private static Set<String> leadingIndexColumns(Connection conn, String table) {
+        Set<String> columns = new HashSet<>();
+        try {
+            DatabaseMetaData meta = conn.getMetaData();
+            for (String name : new String[]{table, table.toUpperCase(Locale.ROOT), table.toLowerCase(Locale.ROOT)}) {
+                try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, name, false, true)) {
+                    while (rs.next()) {
+                        if (rs.getShort("ORDINAL_POSITION") == 1 && rs.getString("COLUMN_NAME") != null) {
+                            columns.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+                if (!columns.isEmpty()) break;
+            }
+        } catch (SQLException e) {
+            // no index metadata: every predicate column gets a suggestion
+        }
+        return columns;
+    }
+}
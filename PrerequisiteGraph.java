@@ -0,0 +1,171 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The CoursePrerequisites table as a graph with precomputed transitive closures: for every
+// course, a bitset of all the courses it requires directly or indirectly. Courses that take part
+// in a prerequisite are numbered densely, so a closure costs one bit per such course, and an
+// enrollment check is a walk over one bitset instead of a recursive query.
+//
+// Closures are built in topological order (Kahn's algorithm: a course after all of its
+// prerequisites). Courses left over by the sort lie on a cycle or depend on one; their closures
+// are found by a plain traversal instead. A course on a cycle requires itself, so it can never
+// be taken; cyclicCourses() lists them, load() warns about them and menu choice 34 flags them.
+// addPrerequisite refuses edges that would close a cycle, so cycles only come from rows written
+// by other means (imports, other clients).
+//
+// The graph is immutable; ReferenceDataCache holds the current one and drops it when
+// CoursePrerequisites or Courses change.
+final class PrerequisiteGraph {
+
+    private final Map<Integer, Integer> index = new HashMap<>(); // course id -> dense index
+    private final List<Integer> courseIds = new ArrayList<>();   // dense index -> course id
+    private final List<List<Integer>> direct = new ArrayList<>(); // dense index -> prerequisite indexes
+    private final BitSet[] closures;
+    private final BitSet cyclic = new BitSet();
+
+    private PrerequisiteGraph(List<int[]> edges) {
+        for (int[] edge : edges) {
+            direct.get(indexOf(edge[0])).add(indexOf(edge[1]));
+        }
+        int n = courseIds.size();
+        closures = new BitSet[n];
+
+        List<List<Integer>> dependents = new ArrayList<>(n);
+        int[] pending = new int[n]; // prerequisites whose closure is not complete yet
+        for (int i = 0; i < n; i++) {
+            dependents.add(new ArrayList<>());
+            closures[i] = new BitSet(n);
+        }
+        for (int course = 0; course < n; course++) {
+            for (int prerequisite : direct.get(course)) {
+                dependents.get(prerequisite).add(course);
+                pending[course]++;
+            }
+        }
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            if (pending[i] == 0) ready.add(i);
+        }
+        int sorted = 0;
+        while (!ready.isEmpty()) {
+            int prerequisite = ready.poll();
+            sorted++;
+            for (int course : dependents.get(prerequisite)) {
+                closures[course].set(prerequisite);
+                closures[course].or(closures[prerequisite]);
+                if (--pending[course] == 0) ready.add(course);
+            }
+        }
+        if (sorted < n) {
+            for (int i = 0; i < n; i++) {
+                if (pending[i] > 0) {
+                    closures[i] = reachable(i);
+                    if (closures[i].get(i)) cyclic.set(i);
+                }
+            }
+        }
+    }
+
+    static PrerequisiteGraph load(Connection conn) throws SQLException {
+        List<int[]> edges = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT course_id, prerequisite_id FROM CoursePrerequisites")) {
+            while (rs.next()) {
+                edges.add(new int[]{rs.getInt(1), rs.getInt(2)});
+            }
+        }
+        PrerequisiteGraph graph = new PrerequisiteGraph(edges);
+        if (!graph.cyclic.isEmpty()) {
+            System.err.println("Warning: CoursePrerequisites has cycles; these courses can never be taken: "
+                    + Arrays.toString(graph.cyclicCourses()));
+        }
+        return graph;
+    }
+
+    private int indexOf(int courseId) {
+        Integer i = index.get(courseId);
+        if (i == null) {
+            i = courseIds.size();
+            index.put(courseId, i);
+            courseIds.add(courseId);
+            direct.add(new ArrayList<>());
+        }
+        return i;
+    }
+
+    // Everything reachable from start through prerequisite edges (start itself only on a cycle)
+    private BitSet reachable(int start) {
+        BitSet seen = new BitSet(courseIds.size());
+        Deque<Integer> stack = new ArrayDeque<>(direct.get(start));
+        while (!stack.isEmpty()) {
+            int course = stack.pop();
+            if (seen.get(course)) continue;
+            seen.set(course);
+            stack.addAll(direct.get(course));
+        }
+        return seen;
+    }
+
+    boolean hasPrerequisites(int courseId) {
+        Integer i = index.get(courseId);
+        return i != null && !closures[i].isEmpty();
+    }
+
+    // Every course the course requires, directly or indirectly, ascending
+    int[] prerequisites(int courseId) {
+        Integer i = index.get(courseId);
+        return i == null ? new int[0] : ids(closures[i]);
+    }
+
+    // Required courses that are not among the held ones, ascending; empty if the course can be taken
+    int[] missing(int courseId, Set<Integer> heldCourseIds) {
+        Integer i = index.get(courseId);
+        if (i == null) return new int[0];
+        BitSet missing = (BitSet) closures[i].clone();
+        for (int held : heldCourseIds) {
+            Integer h = index.get(held);
+            if (h != null) missing.clear(h);
+        }
+        return ids(missing);
+    }
+
+    // Whether making prerequisiteId a prerequisite of courseId would close a cycle
+    boolean wouldCreateCycle(int courseId, int prerequisiteId) {
+        if (courseId == prerequisiteId) return true;
+        Integer prerequisite = index.get(prerequisiteId);
+        Integer course = index.get(courseId);
+        return prerequisite != null && course != null && closures[prerequisite].get(course);
+    }
+
+    // Whether the course (indirectly) requires itself
+    boolean isCyclic(int courseId) {
+        Integer i = index.get(courseId);
+        return i != null && cyclic.get(i);
+    }
+
+    // Courses that (indirectly) require themselves, ascending
+    int[] cyclicCourses() {
+        return ids(cyclic);
+    }
+
+    int size() {
+        return courseIds.size();
+    }
+
+    private int[] ids(BitSet bits) {
+        int[] ids = bits.stream().map(courseIds::get).toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+}
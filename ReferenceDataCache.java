@@ -0,0 +1,369 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-process read-through cache of the small, rarely changing College and Courses tables,
+// of the college -> course mapping in CollegeCourses and of the CoursePrerequisites graph.
+// Entries expire after refcache.ttlMs and each map holds at most refcache.maxEntries entries (LRU).
+// Missing ids are cached too, so repeated lookups of a bad id do not go back to the database.
+// Mutations invalidate exactly the entries they touch, and those entries stay uncached while the
+// writing transaction is open: no thread stores a value for them until the writer calls committed()
+// or rolledBack(), which invalidates them once more. So neither an uncommitted value nor one read
+// just before the commit outlives the transaction.
+// Reads on a replica run through bypass(): they neither use nor fill the cache, which only
+// ever holds what the primary returned.
+class ReferenceDataCache {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("refcache.enabled"));
+    static final long TTL_NANOS = Long.getLong("refcache.ttlMs", 60_000L) * 1_000_000L;
+    static final int MAX_ENTRIES = Integer.getInteger("refcache.maxEntries", 10_000);
+
+    record College(int id, String name, int fees) {
+    }
+
+    record Course(int id, String name, int duration) {
+    }
+
+    // A cached value (null for "no such row") and when it was loaded
+    private record Entry<V>(V value, long loadedAt) {
+        boolean expired(long now) {
+            return now - loadedAt > TTL_NANOS;
+        }
+    }
+
+    private static final Map<Integer, Entry<College>> colleges = lruMap();
+    private static final Map<Integer, Entry<Course>> courses = lruMap();
+    private static final Map<Integer, Entry<int[]>> collegeCourses = lruMap(); // college id -> course ids
+    private static Entry<PrerequisiteGraph> prerequisites; // the whole table, loaded at once
+
+    private enum Table { COLLEGE, COURSE, COLLEGE_COURSES, PREREQUISITES }
+
+    private record Key(Table table, int id) {
+    }
+
+    // Keys written by open transactions (with the number of writers), and the keys the current
+    // thread's transaction wrote
+    private static final Map<Key, Integer> inFlight = new HashMap<>();
+    private static final ThreadLocal<List<Key>> written = ThreadLocal.withInitial(ArrayList::new);
+
+    // Set while the current thread reads through a replica connection
+    private static final ThreadLocal<Boolean> bypassed = ThreadLocal.withInitial(() -> false);
+
+    private static long hits;
+    private static long misses;
+    private static long invalidations;
+
+    private static <V> Map<Integer, Entry<V>> lruMap() {
+        return new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<V>> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    // Run a read that must not use or populate the cache, such as one on a lagging replica
+    static <T> T bypass(ShardedDataAccess.ShardTask<T> read, Connection conn) throws SQLException {
+        boolean outer = bypassed.get();
+        bypassed.set(true);
+        try {
+            return read.run(conn);
+        } finally {
+            bypassed.set(outer);
+        }
+    }
+
+    private static boolean active() {
+        return ENABLED && !bypassed.get();
+    }
+
+    // Cached college row, or null if there is no such college
+    static College college(Connection conn, int collegeId) throws SQLException {
+        long generation;
+        synchronized (ReferenceDataCache.class) {
+            Entry<College> entry = lookup(colleges, collegeId);
+            if (entry != null) return entry.value();
+            generation = invalidations;
+        }
+        College college = null;
+        String query = "SELECT college_id, college_name, college_fees FROM College WHERE college_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, collegeId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    college = new College(rs.getInt(1), rs.getString(2), rs.getInt(3));
+                }
+            }
+        }
+        store(Table.COLLEGE, colleges, collegeId, college, generation);
+        return college;
+    }
+
+    // Cached college rows for several ids; ids that are not cached are loaded with one IN query
+    // per chunk of ids. Every given id is a key of the result, mapped to null if there is no such college.
+    static Map<Integer, College> colleges(Connection conn, Collection<Integer> collegeIds) throws SQLException {
+        Map<Integer, College> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long generation;
+        synchronized (ReferenceDataCache.class) {
+            for (int collegeId : collegeIds) {
+                if (result.containsKey(collegeId)) continue;
+                Entry<College> entry = lookup(colleges, collegeId);
+                if (entry != null) {
+                    result.put(collegeId, entry.value());
+                } else {
+                    result.put(collegeId, null);
+                    missing.add(collegeId);
+                }
+            }
+            generation = invalidations;
+        }
+        final int chunk = 500;
+        for (int from = 0; from < missing.size(); from += chunk) {
+            List<Integer> ids = missing.subList(from, Math.min(missing.size(), from + chunk));
+            String query = "SELECT college_id, college_name, college_fees FROM College WHERE college_id IN ("
+                    + "?, ".repeat(ids.size() - 1) + "?)";
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    pstmt.setInt(i + 1, ids.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getInt(1), new College(rs.getInt(1), rs.getString(2), rs.getInt(3)));
+                    }
+                }
+            }
+        }
+        for (int collegeId : missing) {
+            store(Table.COLLEGE, colleges, collegeId, result.get(collegeId), generation);
+        }
+        return result;
+    }
+
+    // Cached course row, or null if there is no such course
+    static Course course(Connection conn, int courseId) throws SQLException {
+        long generation;
+        synchronized (ReferenceDataCache.class) {
+            Entry<Course> entry = lookup(courses, courseId);
+            if (entry != null) return entry.value();
+            generation = invalidations;
+        }
+        Course course = null;
+        String query = "SELECT course_id, course_name, course_duration FROM Courses WHERE course_id = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, courseId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    course = new Course(rs.getInt(1), rs.getString(2), rs.getInt(3));
+                }
+            }
+        }
+        store(Table.COURSE, courses, courseId, course, generation);
+        return course;
+    }
+
+    // Courses offered by a college, ordered by course id
+    static List<Course> coursesOfCollege(Connection conn, int collegeId) throws SQLException {
+        int[] courseIds = null;
+        long generation;
+        synchronized (ReferenceDataCache.class) {
+            Entry<int[]> entry = lookup(collegeCourses, collegeId);
+            if (entry != null) courseIds = entry.value();
+            generation = invalidations;
+        }
+        if (courseIds == null) {
+            List<Integer> ids = new ArrayList<>();
+            String query = "SELECT course_id FROM CollegeCourses WHERE college_id = ? ORDER BY course_id";
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, collegeId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt(1));
+                    }
+                }
+            }
+            courseIds = ids.stream().mapToInt(Integer::intValue).toArray();
+            store(Table.COLLEGE_COURSES, collegeCourses, collegeId, courseIds, generation);
+        }
+
+        List<Course> result = new ArrayList<>(courseIds.length);
+        for (int courseId : courseIds) {
+            Course course = course(conn, courseId);
+            if (course != null) {
+                result.add(course);
+            }
+        }
+        return result;
+    }
+
+    // The prerequisite graph of all courses
+    static PrerequisiteGraph prerequisites(Connection conn) throws SQLException {
+        long generation;
+        synchronized (ReferenceDataCache.class) {
+            if (active() && prerequisites != null && !prerequisites.expired(System.nanoTime())) {
+                hits++;
+                return prerequisites.value();
+            }
+            misses++;
+            generation = invalidations;
+        }
+        PrerequisiteGraph graph = PrerequisiteGraph.load(conn);
+        synchronized (ReferenceDataCache.class) {
+            if (active() && invalidations == generation && !inFlight.containsKey(new Key(Table.PREREQUISITES, 0))) {
+                prerequisites = new Entry<>(graph, System.nanoTime());
+            }
+        }
+        return graph;
+    }
+
+    static boolean collegeExists(Connection conn, int collegeId) throws SQLException {
+        return college(conn, collegeId) != null;
+    }
+
+    static boolean courseExists(Connection conn, int courseId) throws SQLException {
+        return course(conn, courseId) != null;
+    }
+
+    private static <V> Entry<V> lookup(Map<Integer, Entry<V>> map, int id) {
+        if (!active()) {
+            return null;
+        }
+        Entry<V> entry = map.get(id);
+        if (entry != null && !entry.expired(System.nanoTime())) {
+            hits++;
+            return entry;
+        }
+        if (entry != null) {
+            map.remove(id);
+        }
+        misses++;
+        return null;
+    }
+
+    // Skip the store if anything was invalidated while the value was being loaded, since the
+    // loaded value may already be stale, or if an open transaction has written the row
+    private static <V> void store(Table table, Map<Integer, Entry<V>> map, int id, V value, long generation) {
+        if (!active()) {
+            return;
+        }
+        synchronized (ReferenceDataCache.class) {
+            if (invalidations == generation && !inFlight.containsKey(new Key(table, id))) {
+                map.put(id, new Entry<>(value, System.nanoTime()));
+            }
+        }
+    }
+
+    // Invalidation hooks, called by DataAccess after a successful write
+
+    static synchronized void invalidateCollege(int collegeId) {
+        writing(new Key(Table.COLLEGE, collegeId));
+    }
+
+    static synchronized void invalidateCourse(int courseId) {
+        writing(new Key(Table.COURSE, courseId));
+    }
+
+    static synchronized void invalidateCollegeCourses(int collegeId) {
+        writing(new Key(Table.COLLEGE_COURSES, collegeId));
+    }
+
+    // A deleted college loses its row and, through ON DELETE CASCADE, its course mapping
+    static synchronized void collegeDeleted(int collegeId) {
+        invalidateCollege(collegeId);
+        invalidateCollegeCourses(collegeId);
+    }
+
+    static synchronized void invalidatePrerequisites() {
+        writing(new Key(Table.PREREQUISITES, 0));
+    }
+
+    // A deleted course loses its row and disappears from every college that offered it and,
+    // through ON DELETE CASCADE, from the prerequisite graph
+    static synchronized void courseDeleted(int courseId) {
+        invalidateCourse(courseId);
+        invalidatePrerequisites();
+        List<Integer> offering = new ArrayList<>();
+        for (Map.Entry<Integer, Entry<int[]>> e : collegeCourses.entrySet()) {
+            for (int id : e.getValue().value()) {
+                if (id == courseId) {
+                    offering.add(e.getKey());
+                    break;
+                }
+            }
+        }
+        for (int collegeId : offering) {
+            invalidateCollegeCourses(collegeId);
+        }
+    }
+
+    // The current thread's transaction wrote the row behind key: drop it and keep it uncached
+    // until the transaction ends
+    private static void writing(Key key) {
+        invalidations++;
+        remove(key);
+        List<Key> keys = written.get();
+        if (!keys.contains(key)) {
+            keys.add(key);
+            inFlight.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private static void remove(Key key) {
+        switch (key.table()) {
+            case COLLEGE -> colleges.remove(key.id());
+            case COURSE -> courses.remove(key.id());
+            case COLLEGE_COURSES -> collegeCourses.remove(key.id());
+            case PREREQUISITES -> prerequisites = null;
+        }
+    }
+
+    // Transaction hooks: call after the current thread's conn.commit() or conn.rollback().
+    // Values loaded while the transaction was open may predate its outcome, so its keys are
+    // invalidated again before they can be cached.
+
+    static void committed() {
+        transactionEnded();
+    }
+
+    static void rolledBack() {
+        transactionEnded();
+    }
+
+    private static synchronized void transactionEnded() {
+        List<Key> keys = written.get();
+        if (keys.isEmpty()) {
+            return;
+        }
+        invalidations++;
+        for (Key key : keys) {
+            remove(key);
+            inFlight.computeIfPresent(key, (k, writers) -> writers == 1 ? null : writers - 1);
+        }
+        keys.clear();
+    }
+
+    static synchronized void invalidateAll() {
+        invalidations++;
+        colleges.clear();
+        courses.clear();
+        collegeCourses.clear();
+        prerequisites = null;
+    }
+
+    static synchronized String stats() {
+        long lookups = hits + misses;
+        return "Reference data cache [colleges=" + colleges.size() + ", courses=" + courses.size()
+                + ", collegeCourseLists=" + collegeCourses.size()
+                + ", prerequisiteGraph=" + (prerequisites == null ? "not loaded" : prerequisites.value().size() + " courses")
+                + ", hits=" + hits + ", misses=" + misses
+                + ", hitRatio=" + String.format("%.1f%%", lookups == 0 ? 0.0 : 100.0 * hits / lookups)
+                + ", invalidations=" + invalidations + "]";
+    }
+}
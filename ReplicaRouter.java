@@ -0,0 +1,113 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read/write splitting: read-only menu operations go to replica databases (round robin),
+// mutations stay on the primary connection.
+//   -Dreplica.urls=url1,url2          replicas; routing is off when unset
+//   -Dreplica.user / replica.password default to the primary credentials
+//   -Dreplica.poolSize=4              connections per replica
+//   -Dreplica.readYourWrites=window   window: after a mutation, reads stay on the primary until
+//                                     the transaction ends and for replica.stickyMs after its
+//                                     commit (the replication lag allowance)
+//                                     none: reads always go to a replica
+//   -Dreplica.stickyMs=1000
+// A replica that cannot hand out a connection is skipped; if none can, the read runs on the primary.
+// Replica reads bypass ReferenceDataCache, and the reports and name search stay on the primary while
+// reports.incremental, snapshot.reports or search.index keep their state in memory.
+class ReplicaRouter implements AutoCloseable {
+
+    static final String URLS = System.getProperty("replica.urls", "");
+    static final String USER = System.getProperty("replica.user", JdbcDemo.USER);
+    static final String PASSWORD = System.getProperty("replica.password", JdbcDemo.PASSWORD);
+    static final int POOL_SIZE = Integer.getInteger("replica.poolSize", 4);
+    static final String READ_YOUR_WRITES = System.getProperty("replica.readYourWrites", "window");
+    static final long STICKY_MS = Long.getLong("replica.stickyMs", 1000L);
+
+    private final List<ConnectionPool> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final boolean readYourWrites;
+    private final long stickyNanos;
+    private volatile boolean writesPending;
+    private volatile long primaryUntil = System.nanoTime();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    ReplicaRouter(List<String> urls, String user, String password, int poolSize,
+                  boolean readYourWrites, long stickyMillis) throws SQLException {
+        for (String url : urls) {
+            replicas.add(new ConnectionPool(url, user, password, 1, poolSize, JdbcDemo.POOL_IDLE_TIMEOUT_MS,
+                    JdbcDemo.POOL_BORROW_TIMEOUT_MS, JdbcDemo.STATEMENT_CACHE_SIZE));
+        }
+        this.readYourWrites = readYourWrites;
+        this.stickyNanos = stickyMillis * 1_000_000L;
+    }
+
+    // The router configured by the replica.* properties, or null when there are no replicas
+    static ReplicaRouter fromProperties() throws SQLException {
+        List<String> urls = new ArrayList<>();
+        for (String url : URLS.split(",")) {
+            if (!url.isBlank()) urls.add(url.trim());
+        }
+        if (urls.isEmpty()) {
+            return null;
+        }
+        return new ReplicaRouter(urls, USER, PASSWORD, POOL_SIZE, !"none".equals(READ_YOUR_WRITES), STICKY_MS);
+    }
+
+    // Whether the next read may go to a replica without missing this session's own writes
+    boolean readFromReplica() {
+        boolean replica = !readYourWrites || (!writesPending && System.nanoTime() - primaryUntil >= 0);
+        (replica ? replicaReads : primaryReads).increment();
+        return replica;
+    }
+
+    // A connection to the next replica in turn, or null if none is available
+    Connection borrowReplica() {
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            ConnectionPool pool = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            try {
+                return Instrumentation.wrap(pool.borrow());
+            } catch (SQLException e) {
+                replicaFailures.increment();
+            }
+        }
+        replicaReads.decrement();
+        primaryReads.increment();
+        return null;
+    }
+
+    // Session hooks: a mutation ran on the primary, the primary transaction ended
+
+    void wrote() {
+        writesPending = true;
+    }
+
+    void committed() {
+        if (writesPending) {
+            primaryUntil = System.nanoTime() + stickyNanos;
+        }
+        writesPending = false;
+    }
+
+    void rolledBack() {
+        writesPending = false;
+    }
+
+    String stats() {
+        return "Replica router [replicas=" + replicas.size() + ", readYourWrites=" + (readYourWrites ? "window" : "none")
+                + ", replicaReads=" + replicaReads.sum() + ", primaryReads=" + primaryReads.sum()
+                + ", replicaFailures=" + replicaFailures.sum() + "]";
+    }
+
+    @Override
+    public void close() {
+        for (ConnectionPool pool : replicas) {
+            pool.close();
+        }
+    }
+}
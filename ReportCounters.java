@@ -0,0 +1,232 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Incrementally maintained per-college aggregates behind menu reports 23 and 24.
+// The baseline (student count, non-null age count and age sum per college) is loaded once with
+// a GROUP BY; after that the DataAccess methods that change college_id_choice or student_age
+// report each change here. Changes are staged until commit() and dropped on rollback(), so a
+// report answers from memory in O(colleges).
+//
+// Only writes made through DataAccess on this process are seen; after changes from elsewhere
+// call invalidate() (menu choice 31) and the baseline is reloaded on next use.
+//
+// With a MutationJournal, committed baselines and deltas are journaled, and warm() restores the
+// baseline at startup without the GROUP BY.
+//   -Dreports.incremental=true   serve menu reports 23 and 24 from these counters
+class ReportCounters {
+
+    static final boolean ENABLED = Boolean.getBoolean("reports.incremental");
+
+    // A student's college choice and age before a change; null fields are SQL NULLs
+    record Row(Integer collegeId, Integer age) {
+    }
+
+    static final Row ABSENT = new Row(null, null);
+
+    private static final int STUDENTS = 0;
+    private static final int AGES = 1;   // students with a non-null age
+    private static final int AGE_SUM = 2;
+
+    private static Map<Integer, long[]> baseline; // null until loaded
+    private static final Map<Integer, long[]> staged = new HashMap<>();
+    private static boolean writesSinceCommit;
+    private static boolean baselineDirty;       // loaded while uncommitted writes were pending
+
+    private static boolean tracking() {
+        return ENABLED && baseline != null;
+    }
+
+    // The student's current row, locked for the rest of the transaction, or null when the
+    // counters are not being tracked and the caller need not read it
+    static Row row(Connection conn, int studentId) throws SQLException {
+        synchronized (ReportCounters.class) {
+            if (!tracking()) return null;
+        }
+        String query = "SELECT college_id_choice, student_age FROM Student WHERE student_id = ? FOR UPDATE";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, studentId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return ABSENT;
+                return new Row(rs.getObject(1, Integer.class), rs.getObject(2, Integer.class));
+            }
+        }
+    }
+
+    static synchronized void studentAdded(Integer collegeId, Integer age) {
+        if (!ENABLED) return;
+        writesSinceCommit = true;
+        if (baseline != null) {
+            apply(collegeId, age, 1);
+        }
+    }
+
+    // before is what row() returned ahead of the write
+    static synchronized void studentMoved(Row before, Integer collegeId) {
+        if (!ENABLED || untracked(before)) return;
+        apply(before.collegeId(), before.age(), -1);
+        apply(collegeId, before.age(), 1);
+    }
+
+    static synchronized void studentAgeChanged(Row before, int age) {
+        if (!ENABLED || untracked(before)) return;
+        apply(before.collegeId(), before.age(), -1);
+        apply(before.collegeId(), age, 1);
+    }
+
+    static synchronized void studentDeleted(Row before) {
+        if (!ENABLED || untracked(before)) return;
+        apply(before.collegeId(), before.age(), -1);
+    }
+
+    // ON DELETE SET NULL moves every student of the college to "no college"
+    static synchronized void collegeDeleted(int collegeId) {
+        if (!ENABLED) return;
+        writesSinceCommit = true;
+        if (baseline == null) return;
+        long[] current = current(collegeId);
+        long[] delta = staged.computeIfAbsent(collegeId, k -> new long[3]);
+        for (int i = 0; i < delta.length; i++) {
+            delta[i] -= current[i];
+        }
+    }
+
+    // A change without a before image (the baseline was loaded in between) cannot be applied
+    private static boolean untracked(Row before) {
+        writesSinceCommit = true;
+        if (baseline == null) return true;
+        if (before == null) {
+            invalidate();
+            return true;
+        }
+        return false;
+    }
+
+    private static void apply(Integer collegeId, Integer age, int sign) {
+        if (collegeId == null) return;
+        long[] delta = staged.computeIfAbsent(collegeId, k -> new long[3]);
+        delta[STUDENTS] += sign;
+        if (age != null) {
+            delta[AGES] += sign;
+            delta[AGE_SUM] += (long) sign * age;
+        }
+    }
+
+    private static long[] current(int collegeId) {
+        long[] totals = new long[3];
+        for (long[] part : new long[][]{baseline.get(collegeId), staged.get(collegeId)}) {
+            if (part != null) {
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += part[i];
+                }
+            }
+        }
+        return totals;
+    }
+
+    // Fold the staged deltas into the baseline; call after conn.commit()
+    static synchronized void committed() {
+        if (baseline != null && !baselineDirty) {
+            MutationJournal.countersCommitted(staged);
+        }
+        if (baseline != null) {
+            for (Map.Entry<Integer, long[]> delta : staged.entrySet()) {
+                long[] totals = baseline.computeIfAbsent(delta.getKey(), k -> new long[3]);
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += delta.getValue()[i];
+                }
+                if (totals[STUDENTS] == 0) {
+                    baseline.remove(delta.getKey());
+                }
+            }
+        }
+        if (baseline != null && baselineDirty) {
+            MutationJournal.countersLoaded(baseline); // its uncommitted part is committed now
+        }
+        staged.clear();
+        writesSinceCommit = false;
+        baselineDirty = false;
+    }
+
+    // Drop the staged deltas; call after conn.rollback(). A baseline that was loaded with
+    // uncommitted writes in it is dropped too.
+    static synchronized void rolledBack() {
+        staged.clear();
+        if (baselineDirty) {
+            baseline = null;
+        }
+        writesSinceCommit = false;
+        baselineDirty = false;
+    }
+
+    static synchronized void invalidate() {
+        baseline = null;
+        staged.clear();
+        MutationJournal.countersInvalidated();
+    }
+
+    // Use totals rebuilt from the MutationJournal as the baseline, unless one is loaded already
+    static synchronized void warm(Map<Integer, long[]> totals) {
+        if (ENABLED && baseline == null) {
+            baseline = new HashMap<>(totals);
+            staged.clear();
+        }
+    }
+
+    private static synchronized Map<Integer, long[]> load(Connection conn) throws SQLException {
+        if (baseline != null) return baseline;
+        Map<Integer, long[]> totals = new HashMap<>();
+        String query = "SELECT college_id_choice, COUNT(*), COUNT(student_age), SUM(student_age) FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                totals.put(rs.getInt(1), new long[]{rs.getLong(2), rs.getLong(3), rs.getLong(4)});
+            }
+        }
+        baseline = totals;
+        staged.clear();
+        baselineDirty = writesSinceCommit;
+        if (!baselineDirty) {
+            MutationJournal.countersLoaded(baseline);
+        }
+        return baseline;
+    }
+
+    // baseline + staged per college, in college id order, colleges without students left out
+    private static synchronized Map<Integer, long[]> merged(Connection conn) throws SQLException {
+        load(conn);
+        Map<Integer, long[]> merged = new TreeMap<>();
+        for (Integer collegeId : baseline.keySet()) {
+            merged.put(collegeId, current(collegeId));
+        }
+        for (Integer collegeId : staged.keySet()) {
+            merged.putIfAbsent(collegeId, current(collegeId));
+        }
+        merged.values().removeIf(totals -> totals[STUDENTS] <= 0);
+        return merged;
+    }
+
+    // college id -> number of students who chose it, like DataAccess.studentsPerCollege
+    static Map<Integer, Integer> studentsPerCollege(Connection conn) throws SQLException {
+        Map<Integer, Integer> report = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> college : merged(conn).entrySet()) {
+            report.put(college.getKey(), (int) college.getValue()[STUDENTS]);
+        }
+        return report;
+    }
+
+    // college id -> average age of the students who chose it, like DataAccess.averageAgePerCollege
+    static Map<Integer, Double> averageAgePerCollege(Connection conn) throws SQLException {
+        Map<Integer, Double> report = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> college : merged(conn).entrySet()) {
+            long[] totals = college.getValue();
+            report.put(college.getKey(), totals[AGES] == 0 ? 0.0 : (double) totals[AGE_SUM] / totals[AGES]);
+        }
+        return report;
+    }
+}
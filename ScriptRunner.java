@@ -0,0 +1,82 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Headless driver for the menu: runs a command script through JdbcDemo.dispatch.
+// One command per line, the menu number followed by the values the menu would prompt for:
+//
+//   # enroll student 3 in course 4, then rename student 3
+//   15 3 4
+//   18 3 "Aditya Kumar" 0
+//
+// Blank lines and lines starting with # are skipped. Changes are committed every
+// script.commitEvery commands (0 = only at the end) unless CommitPolicy limits are set.
+// A command that fails is rolled back to its savepoint, reported with its line number,
+// and the script carries on.
+class ScriptRunner {
+
+    static final int COMMIT_EVERY = Integer.getInteger("script.commitEvery", 100);
+
+    static void run(Connection conn, Path script) throws SQLException, IOException {
+        PrintStream console = System.out;
+        // Operation output goes through one large buffer instead of a flush per line
+        System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false));
+
+        long commands = 0;
+        long succeeded = 0;
+        long rejected = 0;
+        long failed = 0;
+        CommitPolicy policy = CommitPolicy.fromProperties();
+        if (!policy.isAutomatic()) {
+            policy = new CommitPolicy(COMMIT_EVERY, 0, 0);
+        }
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                commands++;
+                InputReader lineInput = InputReader.ofLine(trimmed);
+                JdbcDemo.in = lineInput;
+                JdbcDemo.lastOutcome = null;
+                try {
+                    if (!JdbcDemo.dispatch(conn, lineInput.nextInt(), policy)) {
+                        break; // an exit command ends the script
+                    }
+                    if (JdbcDemo.lastOutcome != null && !JdbcDemo.lastOutcome.success) {
+                        rejected++;
+                    } else {
+                        succeeded++;
+                    }
+                } catch (SQLException | InputReader.InputException e) {
+                    failed++;
+                    System.out.println("Line " + lineNumber + " failed: " + e.getMessage());
+                }
+            }
+            policy.commit(conn);
+        } finally {
+            System.out.flush();
+            System.setOut(console);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Script finished: %d commands in %.2fs (%.0f commands/s)%n",
+                commands, seconds, commands / Math.max(seconds, 1e-9));
+        System.out.printf("  succeeded=%d, rejected=%d, failed=%d, commits=%d%n",
+                succeeded, rejected, failed, policy.commits());
+    }
+}
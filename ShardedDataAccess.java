@@ -0,0 +1,289 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Horizontal partitioning of Student and StudentCourses across several databases by student_id.
+// College, Courses, CollegeCourses and CoursePrerequisites are reference data replicated to every
+// shard, so a shard checks foreign keys, college offerings and prerequisites locally, and a
+// student's enrollments live on the same shard as the student.
+//   -Dshard.urls=url1,url2,...   one database per shard, each created from init_db.sql; off when unset
+//   -Dshard.user / shard.password default to the primary credentials
+//   -Dshard.poolSize=4           connections per shard
+// A student's shard is a mixed hash of student_id modulo the number of shards, so the list of
+// urls must not change once data has been loaded.
+//
+// Every call runs in its own transaction on the shard(s) it touches and is committed before it
+// returns; the menu's commit and rollback choices do not reach the shards.
+//   point operations    - one student: routed to that student's shard
+//   reference writes    - applied to every shard in parallel; there is no two-phase commit, so
+//                         shards that disagree on the outcome are reported and the write has to
+//                         be repeated on the ones that missed it
+//   cross-shard queries - run on every shard in parallel and merged here: counts are added,
+//                         averages are recomputed from per-shard sums and counts (an average of
+//                         averages would weigh a small shard like a large one), and student lists
+//                         are merged in id order
+class ShardedDataAccess implements AutoCloseable {
+
+    static final String URLS = System.getProperty("shard.urls", "");
+    static final String USER = System.getProperty("shard.user", JdbcDemo.USER);
+    static final String PASSWORD = System.getProperty("shard.password", JdbcDemo.PASSWORD);
+    static final int POOL_SIZE = Integer.getInteger("shard.poolSize", 4);
+    static final boolean ENABLED = !URLS.isBlank();
+
+    interface ShardTask<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private final List<ConnectionPool> shards = new ArrayList<>();
+    private final ExecutorService executor;
+    private final AtomicInteger nextReferenceRead = new AtomicInteger();
+    private final LongAdder pointCalls = new LongAdder();
+    private final LongAdder broadcastCalls = new LongAdder();
+    private final LongAdder divergedWrites = new LongAdder();
+
+    ShardedDataAccess(List<String> urls, String user, String password, int poolSize) throws SQLException {
+        for (String url : urls) {
+            shards.add(new ConnectionPool(url, user, password, 1, poolSize, JdbcDemo.POOL_IDLE_TIMEOUT_MS,
+                    JdbcDemo.POOL_BORROW_TIMEOUT_MS, JdbcDemo.STATEMENT_CACHE_SIZE));
+        }
+        executor = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread t = new Thread(r, "shard-query");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // The shards configured by the shard.* properties, or null when sharding is off
+    static ShardedDataAccess fromProperties() throws SQLException {
+        List<String> urls = new ArrayList<>();
+        for (String url : URLS.split(",")) {
+            if (!url.isBlank()) urls.add(url.trim());
+        }
+        if (urls.isEmpty()) {
+            return null;
+        }
+        return new ShardedDataAccess(urls, USER, PASSWORD, POOL_SIZE);
+    }
+
+    int size() {
+        return shards.size();
+    }
+
+    // Fibonacci hashing, so that ids sharing a stride (all even, every tenth) still spread evenly
+    int shardOf(int studentId) {
+        int h = studentId * 0x9E3779B9;
+        return Math.floorMod(h ^ (h >>> 16), shards.size());
+    }
+
+    // Point operations and reference data
+
+    // Run a task for one student on the student's shard
+    <T> T forStudent(int studentId, ShardTask<T> task) throws SQLException {
+        pointCalls.increment();
+        return onShard(shardOf(studentId), task);
+    }
+
+    // Apply a write to the replicated tables on every shard. Returns the first shard's outcome;
+    // the other shards are expected to agree with it.
+    DataAccess.Outcome forReferenceData(ShardTask<DataAccess.Outcome> write) throws SQLException {
+        List<DataAccess.Outcome> outcomes = onAll(write);
+        DataAccess.Outcome outcome = outcomes.get(0);
+        for (int shard = 1; shard < outcomes.size(); shard++) {
+            if (outcomes.get(shard) != outcome) {
+                divergedWrites.increment();
+                System.err.println("Shards disagree on a reference data write: " + outcomes);
+                break;
+            }
+        }
+        return outcome;
+    }
+
+    // Read replicated tables from one shard, taking the shards in turn
+    <T> T readReferenceData(ShardTask<T> read) throws SQLException {
+        pointCalls.increment();
+        return onShard(Math.floorMod(nextReferenceRead.getAndIncrement(), shards.size()), read);
+    }
+
+    // Cross-shard queries
+
+    // college id -> number of students who chose it, over all shards
+    Map<Integer, Integer> studentsPerCollege() throws SQLException {
+        Map<Integer, Integer> report = new TreeMap<>();
+        for (Map<Integer, Integer> shard : onAll(DataAccess::studentsPerCollege)) {
+            shard.forEach((college, students) -> report.merge(college, students, Integer::sum));
+        }
+        return report;
+    }
+
+    // college id -> average age of the students who chose it, over all shards
+    Map<Integer, Double> averageAgePerCollege() throws SQLException {
+        Map<Integer, long[]> totals = new TreeMap<>();
+        for (Map<Integer, long[]> shard : onAll(ShardedDataAccess::ageTotalsPerCollege)) {
+            shard.forEach((college, t) -> totals.merge(college, t, (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]}));
+        }
+        Map<Integer, Double> report = new TreeMap<>();
+        totals.forEach((college, t) -> report.put(college, t[0] == 0 ? 0.0 : (double) t[1] / t[0]));
+        return report;
+    }
+
+    // college id -> {students with an age, sum of their ages} on one shard
+    private static Map<Integer, long[]> ageTotalsPerCollege(Connection conn) throws SQLException {
+        Map<Integer, long[]> totals = new TreeMap<>();
+        String query = "SELECT college_id_choice, COUNT(student_age), SUM(student_age) FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                totals.put(rs.getInt(1), new long[]{rs.getLong(2), rs.getLong(3)});
+            }
+        }
+        return totals;
+    }
+
+    // Up to limit students whose name contains the given text, in id order
+    List<DataAccess.Student> searchStudentsByName(String name, int limit) throws SQLException {
+        return merge(onAll(conn -> DataAccess.searchStudentsByName(conn, name, limit)), limit);
+    }
+
+    // Students whose college choice is the given college, in id order, or null if there is no such college
+    List<DataAccess.Student> studentsOfCollege(int collegeId) throws SQLException {
+        List<List<DataAccess.Student>> parts = onAll(conn -> DataAccess.studentsOfCollege(conn, collegeId));
+        if (parts.contains(null)) return null;
+        return merge(parts, Integer.MAX_VALUE);
+    }
+
+    // Up to limit students with id > afterId, in id order (keyset page over all shards)
+    List<DataAccess.Student> studentsPage(int afterId, int limit) throws SQLException {
+        return merge(onAll(conn -> {
+            List<DataAccess.Student> page = new ArrayList<>();
+            TableListing.page(conn, TableListing.Table.STUDENT, afterId, limit, rs -> page.add(new DataAccess.Student(
+                    rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getObject(4, Integer.class))));
+            return page;
+        }), limit);
+    }
+
+    // Stream every student to the handler, one shard after another (id order within a shard)
+    long streamStudents(TableListing.RowHandler handler) throws SQLException {
+        long rows = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            rows += onShard(shard, conn -> TableListing.stream(conn, TableListing.Table.STUDENT, handler));
+        }
+        return rows;
+    }
+
+    // BatchLookup.students over the shards that hold the given ids; each shard is sent only its own ids
+    Map<Integer, BatchLookup.StudentDetails> studentDetails(Collection<Integer> studentIds) throws SQLException {
+        Map<Integer, List<Integer>> idsByShard = new TreeMap<>();
+        for (int id : studentIds) {
+            idsByShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id);
+        }
+        Map<Integer, ShardTask<Map<Integer, BatchLookup.StudentDetails>>> tasks = new TreeMap<>();
+        idsByShard.forEach((shard, ids) -> tasks.put(shard, conn -> BatchLookup.students(conn, ids)));
+        Map<Integer, BatchLookup.StudentDetails> found = new HashMap<>();
+        for (Map<Integer, BatchLookup.StudentDetails> shard : onShards(tasks)) {
+            found.putAll(shard);
+        }
+        Map<Integer, BatchLookup.StudentDetails> result = new LinkedHashMap<>();
+        for (int id : studentIds) {
+            result.put(id, found.get(id));
+        }
+        return result;
+    }
+
+    // BatchLookup.studentsOfColleges over all shards, students merged in id order
+    Map<Integer, BatchLookup.CollegeStudents> studentsOfColleges(Collection<Integer> collegeIds) throws SQLException {
+        Map<Integer, BatchLookup.CollegeStudents> result = new LinkedHashMap<>();
+        for (Map<Integer, BatchLookup.CollegeStudents> shard : onAll(conn -> BatchLookup.studentsOfColleges(conn, collegeIds))) {
+            shard.forEach((id, part) -> {
+                BatchLookup.CollegeStudents merged = result.get(id);
+                result.put(id, !result.containsKey(id) ? part : merged == null || part == null ? null
+                        : new BatchLookup.CollegeStudents(merged.college(), merge(List.of(merged.students(), part.students()), Integer.MAX_VALUE)));
+            });
+        }
+        return result;
+    }
+
+    private static List<DataAccess.Student> merge(List<List<DataAccess.Student>> parts, int limit) {
+        List<DataAccess.Student> merged = new ArrayList<>();
+        for (List<DataAccess.Student> part : parts) {
+            merged.addAll(part);
+        }
+        merged.sort(Comparator.comparingInt(DataAccess.Student::id));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    // Execution
+
+    // One pooled connection and one transaction on the given shard, retried on lock conflicts
+    private <T> T onShard(int shard, ShardTask<T> task) throws SQLException {
+        try (Connection conn = Instrumentation.wrap(shards.get(shard).borrow())) {
+            conn.setAutoCommit(false);
+            return TransactionRetry.DEFAULT.transaction(conn, task::run);
+        }
+    }
+
+    // Run the task on every shard in parallel; results are in shard order. Waits for all shards
+    // before reporting the first failure.
+    private <T> List<T> onAll(ShardTask<T> task) throws SQLException {
+        broadcastCalls.increment();
+        Map<Integer, ShardTask<T>> tasks = new TreeMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            tasks.put(shard, task);
+        }
+        return onShards(tasks);
+    }
+
+    // Run shard -> task in parallel; results are in the map's iteration order. Waits for all
+    // shards before reporting the first failure.
+    private <T> List<T> onShards(Map<Integer, ShardTask<T>> tasks) throws SQLException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (Map.Entry<Integer, ShardTask<T>> task : tasks.entrySet()) {
+            futures.add(executor.submit(() -> onShard(task.getKey(), task.getValue())));
+        }
+        List<T> results = new ArrayList<>();
+        SQLException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                SQLException cause = e.getCause() instanceof SQLException sql ? sql
+                        : new SQLException("Shard task failed", e.getCause());
+                if (failure == null) failure = cause;
+                else failure.addSuppressed(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    String stats() {
+        return "Shards [shards=" + shards.size() + ", pointCalls=" + pointCalls.sum()
+                + ", broadcastCalls=" + broadcastCalls.sum() + ", divergedWrites=" + divergedWrites.sum() + "]";
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (ConnectionPool pool : shards) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded LRU cache of prepared statements keyed by SQL text, owned by one physical connection.
+// Statements returned by prepare() are proxies: close() only clears parameters, closes the
+// open result set and undoes the caller's setMaxRows/setFetchSize/setQueryTimeout (and similar),
+// so the next prepare() of the same SQL reuses the server-side statement in its initial state.
+// Statements in use are never evicted; the cache shrinks back to capacity as they are released.
+// Not thread-safe: a pooled connection is used by one thread at a time.
+class StatementCache {
+
+    // Statement settings a caller may change; they are put back before the statement is reused
+    private static final Set<String> SETTINGS = Set.of("setMaxRows", "setLargeMaxRows", "setFetchSize",
+            "setFetchDirection", "setQueryTimeout", "setMaxFieldSize", "setEscapeProcessing", "setPoolable");
+
+    private final Connection physical;
+    private final int capacity;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(Connection physical, int capacity, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    // Return a cached statement for the SQL, preparing it on a miss.
+    // The owner is the logical connection that getConnection() should report.
+    PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            PreparedStatement statement = physical.prepareStatement(sql);
+            if (cached != null) {
+                // Same SQL already open (nested use): hand out an uncached statement
+                return statement;
+            }
+            cached = new CachedStatement(statement);
+            cached.inUse = true;
+            statements.put(sql, cached);
+            evictOverflow();
+        }
+        cached.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new Handle(cached, owner));
+    }
+
+    // Close least recently used statements that are not in use until the cache fits its capacity
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            CachedStatement cached = it.next();
+            if (!cached.inUse) {
+                closeQuietly(cached.statement);
+                it.remove();
+            }
+        }
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // Nothing useful to do with a failing close
+        }
+    }
+
+    private static final class CachedStatement {
+        final PreparedStatement statement;
+        boolean inUse;
+        private Object[] defaults; // settings as prepared, read the first time a caller changes one
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        void rememberDefaults() throws SQLException {
+            if (defaults == null) {
+                defaults = new Object[]{statement.getMaxRows(), statement.getFetchSize(), statement.getFetchDirection(),
+                        statement.getQueryTimeout(), statement.getMaxFieldSize(), statement.isPoolable()};
+            }
+        }
+
+        void restoreDefaults() throws SQLException {
+            statement.setMaxRows((Integer) defaults[0]);
+            statement.setFetchSize((Integer) defaults[1]);
+            statement.setFetchDirection((Integer) defaults[2]);
+            statement.setQueryTimeout((Integer) defaults[3]);
+            statement.setMaxFieldSize((Integer) defaults[4]);
+            statement.setPoolable((Boolean) defaults[5]);
+            statement.setEscapeProcessing(true);
+        }
+    }
+
+    // One logical use of a cached statement, from prepare() until close()
+    private final class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private ResultSet lastResult;
+        private boolean closed;
+        private boolean settingsChanged;
+        private boolean batched;
+
+        Handle(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        if (lastResult != null) {
+                            closeQuietly(lastResult);
+                        }
+                        try {
+                            cached.statement.clearParameters();
+                            if (batched) {
+                                cached.statement.clearBatch();
+                            }
+                            if (settingsChanged) {
+                                cached.restoreDefaults();
+                            }
+                        } catch (SQLException e) {
+                            // not reusable in an unknown state
+                            statements.values().remove(cached);
+                            closeQuietly(cached.statement);
+                            throw e;
+                        }
+                        cached.inUse = false;
+                        evictOverflow();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || cached.statement.isClosed();
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    if (SETTINGS.contains(method.getName())) {
+                        cached.rememberDefaults();
+                        settingsChanged = true;
+                    } else if (method.getName().equals("addBatch")) {
+                        batched = true;
+                    }
+                    try {
+                        Object result = method.invoke(cached.statement, args);
+                        if (result instanceof ResultSet rs) {
+                            lastResult = rs;
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
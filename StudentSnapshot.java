@@ -0,0 +1,283 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+
+// Read-only columnar copy of Student and StudentCourses for the per-college reports.
+// Every column is a primitive array indexed by row (students in id order), colleges are mapped
+// to dense indexes, and enrollments are stored CSR style: the course ids of student i are
+// enrolledCourseIds[enrollmentOffsets[i] .. enrollmentOffsets[i + 1]). Reports make one
+// fork-join pass over the arrays instead of a GROUP BY on the server.
+//
+// The snapshot is only as fresh as the last refresh() (menu choice 31).
+//   -Dsnapshot.reports=true          serve menu reports 23 and 24 from the snapshot
+//   -Dsnapshot.parallelThreshold=N   rows below which a report task stops splitting
+final class StudentSnapshot {
+
+    static final boolean ENABLED = Boolean.getBoolean("snapshot.reports");
+    static final int PARALLEL_THRESHOLD = Integer.getInteger("snapshot.parallelThreshold", 1 << 14);
+    static final int NO_COLLEGE = -1;
+    static final int NO_AGE = Integer.MIN_VALUE;
+
+    private static volatile StudentSnapshot current;
+
+    final int size;
+    final int[] studentIds;      // ascending
+    final int[] ages;            // NO_AGE when NULL
+    final int[] collegeIndex;    // index into collegeIds, or NO_COLLEGE
+    final float[] gpas;          // NaN when NULL
+    final int[] collegeIds;      // dense index -> college id, ascending
+    final int[] enrollmentOffsets;
+    final int[] enrolledCourseIds;
+    final long loadNanos;
+
+    private StudentSnapshot(int size, int[] studentIds, int[] ages, int[] collegeIndex, float[] gpas,
+                            int[] collegeIds, int[] enrollmentOffsets, int[] enrolledCourseIds, long loadNanos) {
+        this.size = size;
+        this.studentIds = studentIds;
+        this.ages = ages;
+        this.collegeIndex = collegeIndex;
+        this.gpas = gpas;
+        this.collegeIds = collegeIds;
+        this.enrollmentOffsets = enrollmentOffsets;
+        this.enrolledCourseIds = enrolledCourseIds;
+        this.loadNanos = loadNanos;
+    }
+
+    // The current snapshot, loading it first if there is none yet
+    static StudentSnapshot current(Connection conn) throws SQLException {
+        StudentSnapshot snapshot = current;
+        return snapshot != null ? snapshot : refresh(conn);
+    }
+
+    // Reload the snapshot from the database and make it current
+    static StudentSnapshot refresh(Connection conn) throws SQLException {
+        StudentSnapshot snapshot = load(conn);
+        current = snapshot;
+        return snapshot;
+    }
+
+    static StudentSnapshot load(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        int n = 0;
+        int[] ids = new int[1024];
+        int[] ages = new int[1024];
+        int[] colleges = new int[1024]; // raw college ids, Integer.MIN_VALUE for NULL
+        float[] gpas = new float[1024];
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(TableListing.streamingFetchSize(conn));
+            String query = "SELECT student_id, student_age, college_id_choice, gpa FROM Student ORDER BY student_id";
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    if (n == ids.length) {
+                        int capacity = n * 2;
+                        ids = Arrays.copyOf(ids, capacity);
+                        ages = Arrays.copyOf(ages, capacity);
+                        colleges = Arrays.copyOf(colleges, capacity);
+                        gpas = Arrays.copyOf(gpas, capacity);
+                    }
+                    ids[n] = rs.getInt(1);
+                    int age = rs.getInt(2);
+                    ages[n] = rs.wasNull() ? NO_AGE : age;
+                    int college = rs.getInt(3);
+                    colleges[n] = rs.wasNull() ? Integer.MIN_VALUE : college;
+                    float gpa = rs.getFloat(4);
+                    gpas[n] = rs.wasNull() ? Float.NaN : gpa;
+                    n++;
+                }
+            }
+        }
+        ids = Arrays.copyOf(ids, n);
+        ages = Arrays.copyOf(ages, n);
+        gpas = Arrays.copyOf(gpas, n);
+
+        // Dense college indexes: distinct non-null ids in ascending order
+        int[] collegeIds = Arrays.stream(colleges, 0, n).filter(id -> id != Integer.MIN_VALUE).sorted().distinct().toArray();
+        int[] collegeIndex = new int[n];
+        for (int i = 0; i < n; i++) {
+            collegeIndex[i] = colleges[i] == Integer.MIN_VALUE ? NO_COLLEGE : Arrays.binarySearch(collegeIds, colleges[i]);
+        }
+
+        // Enrollments arrive grouped by student; count per row, then prefix-sum into offsets
+        int[] pairs = new int[2048];
+        int m = 0;
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(TableListing.streamingFetchSize(conn));
+            String query = "SELECT student_id, course_id FROM StudentCourses ORDER BY student_id, course_id";
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    if (2 * m == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    }
+                    pairs[2 * m] = rs.getInt(1);
+                    pairs[2 * m + 1] = rs.getInt(2);
+                    m++;
+                }
+            }
+        }
+        int[] offsets = new int[n + 1];
+        int[] rowOf = new int[m];
+        for (int k = 0; k < m; k++) {
+            rowOf[k] = Arrays.binarySearch(ids, pairs[2 * k]);
+            if (rowOf[k] >= 0) {
+                offsets[rowOf[k] + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] courseIds = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int k = 0; k < m; k++) {
+            if (rowOf[k] >= 0) {
+                courseIds[fill[rowOf[k]]++] = pairs[2 * k + 1];
+            }
+        }
+
+        return new StudentSnapshot(n, ids, ages, collegeIndex, gpas, collegeIds, offsets, courseIds,
+                System.nanoTime() - start);
+    }
+
+    int enrollmentCount() {
+        return enrolledCourseIds.length;
+    }
+
+    // Bytes held by the column arrays (16 byte array headers included)
+    long memoryBytes() {
+        long bytes = 0;
+        for (int length : new int[]{studentIds.length, ages.length, collegeIndex.length, gpas.length,
+                collegeIds.length, enrollmentOffsets.length, enrolledCourseIds.length}) {
+            bytes += 16 + 4L * length;
+        }
+        return bytes;
+    }
+
+    String describe() {
+        return String.format("Snapshot: %d students, %d colleges, %d enrollments, %.1f MB, loaded in %.1f ms",
+                size, collegeIds.length, enrollmentCount(), memoryBytes() / 1e6, loadNanos / 1e6);
+    }
+
+    // Per-college totals; index i is college collegeIds[i]
+    static final class Totals {
+        final long[] students;
+        final long[] ageCount;   // students with a non-null age
+        final long[] ageSum;
+        final long[] gpaCount;
+        final double[] gpaSum;
+        final long[] enrollments;
+
+        Totals(int colleges) {
+            students = new long[colleges];
+            ageCount = new long[colleges];
+            ageSum = new long[colleges];
+            gpaCount = new long[colleges];
+            gpaSum = new double[colleges];
+            enrollments = new long[colleges];
+        }
+
+        Totals merge(Totals other) {
+            for (int c = 0; c < students.length; c++) {
+                students[c] += other.students[c];
+                ageCount[c] += other.ageCount[c];
+                ageSum[c] += other.ageSum[c];
+                gpaCount[c] += other.gpaCount[c];
+                gpaSum[c] += other.gpaSum[c];
+                enrollments[c] += other.enrollments[c];
+            }
+            return this;
+        }
+    }
+
+    private final class Aggregate extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        Aggregate(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                Totals totals = new Totals(collegeIds.length);
+                for (int i = from; i < to; i++) {
+                    int c = collegeIndex[i];
+                    if (c == NO_COLLEGE) {
+                        continue;
+                    }
+                    totals.students[c]++;
+                    if (ages[i] != NO_AGE) {
+                        totals.ageCount[c]++;
+                        totals.ageSum[c] += ages[i];
+                    }
+                    float gpa = gpas[i];
+                    if (gpa == gpa) { // not NaN
+                        totals.gpaCount[c]++;
+                        totals.gpaSum[c] += gpa;
+                    }
+                    totals.enrollments[c] += enrollmentOffsets[i + 1] - enrollmentOffsets[i];
+                }
+                return totals;
+            }
+            int mid = (from + to) >>> 1;
+            Aggregate left = new Aggregate(from, mid);
+            left.fork();
+            Totals right = new Aggregate(mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // One parallel pass over all rows
+    Totals totals() {
+        return new Aggregate(0, size).invoke();
+    }
+
+    // college id -> number of students who chose it, like DataAccess.studentsPerCollege
+    Map<Integer, Integer> studentsPerCollege() {
+        Totals totals = totals();
+        Map<Integer, Integer> report = new LinkedHashMap<>();
+        for (int c = 0; c < collegeIds.length; c++) {
+            report.put(collegeIds[c], (int) totals.students[c]);
+        }
+        return report;
+    }
+
+    // college id -> average non-null age of the students who chose it, like DataAccess.averageAgePerCollege
+    // (0.0 when none has an age, as AVG's NULL reads through getDouble)
+    Map<Integer, Double> averageAgePerCollege() {
+        Totals totals = totals();
+        Map<Integer, Double> report = new LinkedHashMap<>();
+        for (int c = 0; c < collegeIds.length; c++) {
+            report.put(collegeIds[c], totals.ageCount[c] == 0 ? 0.0 : (double) totals.ageSum[c] / totals.ageCount[c]);
+        }
+        return report;
+    }
+
+    // college id -> average GPA of its students that have one (colleges without any are left out)
+    Map<Integer, Double> averageGpaPerCollege() {
+        Totals totals = totals();
+        Map<Integer, Double> report = new LinkedHashMap<>();
+        for (int c = 0; c < collegeIds.length; c++) {
+            if (totals.gpaCount[c] > 0) {
+                report.put(collegeIds[c], totals.gpaSum[c] / totals.gpaCount[c]);
+            }
+        }
+        return report;
+    }
+
+    // college id -> course enrollments held by the students who chose it
+    Map<Integer, Long> enrollmentsPerCollege() {
+        Totals totals = totals();
+        Map<Integer, Long> report = new LinkedHashMap<>();
+        for (int c = 0; c < collegeIds.length; c++) {
+            report.put(collegeIds[c], totals.enrollments[c]);
+        }
+        return report;
+    }
+}
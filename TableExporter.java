@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.zip.GZIPOutputStream;
+
+// Streaming export of tables and reports to CSV or JSON Lines.
+// Rows are read from a forward-only streaming cursor (see TableListing) and encoded straight
+// into one large byte buffer that is flushed to a FileChannel, so integers and strings are
+// written without building a String per row. A file name ending in .gz is gzip compressed.
+//
+// Usage: java JdbcDemo export <what> <file>
+//   what: student, college, course, enrollment, students-per-college, average-age
+//   file: *.csv or *.jsonl, optionally followed by .gz
+class TableExporter {
+
+    static final int BUFFER_SIZE = Integer.getInteger("export.bufferSize", 1 << 20);
+
+    static String exportQuery(String what) {
+        return switch (what) {
+            case "student" -> "SELECT student_id, student_name, student_age, college_id_choice, gpa FROM Student ORDER BY student_id";
+            case "college" -> "SELECT college_id, college_name, college_fees FROM College ORDER BY college_id";
+            case "course" -> "SELECT course_id, course_name, course_duration FROM Courses ORDER BY course_id";
+            case "enrollment" -> "SELECT student_id, course_id FROM StudentCourses ORDER BY student_id, course_id";
+            case "students-per-college" -> "SELECT college_id_choice, COUNT(*) AS num_students FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice ORDER BY college_id_choice";
+            case "average-age" -> "SELECT college_id_choice, AVG(student_age) AS avg_age FROM Student WHERE college_id_choice IS NOT NULL GROUP BY college_id_choice ORDER BY college_id_choice";
+            default -> null;
+        };
+    }
+
+    static void run(Connection conn, String what, Path file) throws SQLException, IOException {
+        String query = exportQuery(what);
+        if (query == null) {
+            System.out.println("Unknown export: " + what
+                    + " (expected student, college, course, enrollment, students-per-college or average-age)");
+            return;
+        }
+        String name = file.getFileName().toString().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".jsonl.gz") || name.endsWith(".json") || name.endsWith(".json.gz");
+
+        long start = System.nanoTime();
+        long rows;
+        long bytes;
+        try (Sink sink = new Sink(file, gzip);
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(TableListing.streamingFetchSize(conn));
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                rows = json ? writeJsonLines(rs, sink) : writeCsv(rs, sink);
+            }
+            sink.flush();
+            bytes = sink.written;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Exported %d rows (%d bytes%s) to %s in %.2fs (%.0f rows/s)%n",
+                rows, bytes, gzip ? " before compression" : "", file, seconds, rows / Math.max(seconds, 1e-9));
+    }
+
+    private static long writeCsv(ResultSet rs, Sink out) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        int[] types = new int[columns + 1];
+        for (int c = 1; c <= columns; c++) {
+            types[c] = kind(meta.getColumnType(c));
+            if (c > 1) out.put(',');
+            out.putCsv(meta.getColumnLabel(c));
+        }
+        out.put('\n');
+
+        long rows = 0;
+        while (rs.next()) {
+            for (int c = 1; c <= columns; c++) {
+                if (c > 1) out.put(',');
+                writeValue(rs, c, types[c], out, false);
+            }
+            out.put('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private static long writeJsonLines(ResultSet rs, Sink out) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+        int[] types = new int[columns + 1];
+        byte[][] keys = new byte[columns + 1][]; // pre-encoded "name": prefixes
+        for (int c = 1; c <= columns; c++) {
+            types[c] = kind(meta.getColumnType(c));
+            keys[c] = ((c == 1 ? "{\"" : ",\"") + meta.getColumnLabel(c) + "\":").getBytes(StandardCharsets.UTF_8);
+        }
+
+        long rows = 0;
+        while (rs.next()) {
+            for (int c = 1; c <= columns; c++) {
+                out.put(keys[c]);
+                writeValue(rs, c, types[c], out, true);
+            }
+            out.put('}');
+            out.put('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private static final int INTEGER = 0;
+    private static final int DECIMAL = 1;
+    private static final int TEXT = 2;
+
+    private static int kind(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> INTEGER;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE, Types.DECIMAL, Types.NUMERIC -> DECIMAL;
+            default -> TEXT;
+        };
+    }
+
+    // NULL is an empty CSV field or a JSON null
+    private static void writeValue(ResultSet rs, int column, int kind, Sink out, boolean json) throws SQLException, IOException {
+        switch (kind) {
+            case INTEGER -> {
+                long value = rs.getLong(column);
+                if (rs.wasNull()) {
+                    if (json) out.putAscii("null");
+                } else {
+                    out.putLong(value);
+                }
+            }
+            case DECIMAL -> {
+                // the driver's text form, so a FLOAT column keeps its short representation
+                String value = rs.getString(column);
+                if (value == null) {
+                    if (json) out.putAscii("null");
+                } else {
+                    out.putAscii(value);
+                }
+            }
+            default -> {
+                String value = rs.getString(column);
+                if (value == null) {
+                    if (json) out.putAscii("null");
+                } else if (json) {
+                    out.putJson(value);
+                } else {
+                    out.putCsv(value);
+                }
+            }
+        }
+    }
+
+    // Byte buffer in front of a FileChannel (or a gzip stream over it)
+    private static final class Sink implements AutoCloseable {
+        private final FileChannel channel;
+        private final OutputStream gzip;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private final byte[] digits = new byte[20];
+        private int pos;
+        long written;
+
+        Sink(Path file, boolean compress) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            gzip = compress ? new GZIPOutputStream(Channels.newOutputStream(channel), 1 << 16) : null;
+        }
+
+        void put(char c) throws IOException {
+            if (pos == buf.length) flush();
+            buf[pos++] = (byte) c;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            if (pos + bytes.length > buf.length) flush();
+            if (bytes.length > buf.length) {
+                // larger than the whole buffer (small export.bufferSize): write it straight through
+                write(bytes, bytes.length);
+                return;
+            }
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void putAscii(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                put(s.charAt(i));
+            }
+        }
+
+        void putLong(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                putAscii(Long.toString(value));
+                return;
+            }
+            if (value < 0) {
+                put('-');
+                value = -value;
+            }
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            if (pos + n > buf.length) flush();
+            while (n > 0) {
+                buf[pos++] = digits[--n];
+            }
+        }
+
+        // Quote only when needed: delimiter, quote or line break in the value
+        void putCsv(String s) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < s.length() && !quote; i++) {
+                char c = s.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                putUtf8(s, false);
+                return;
+            }
+            put('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"') put('"');
+                putChar(s, i, c);
+                if (isPair(s, i)) i++;
+            }
+            put('"');
+        }
+
+        void putJson(String s) throws IOException {
+            put('"');
+            putUtf8(s, true);
+            put('"');
+        }
+
+        private void putUtf8(String s, boolean jsonEscape) throws IOException {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (jsonEscape && (c == '"' || c == '\\')) {
+                    put('\\');
+                    put(c);
+                } else if (jsonEscape && c < 0x20) {
+                    putAscii(String.format("\\u%04x", (int) c));
+                } else {
+                    putChar(s, i, c);
+                    if (isPair(s, i)) i++;
+                }
+            }
+        }
+
+        // Whether s[i] and s[i + 1] form a surrogate pair, which putChar writes as one code point
+        private static boolean isPair(String s, int i) {
+            return Character.isHighSurrogate(s.charAt(i)) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1));
+        }
+
+        // UTF-8 encode the character at i (a surrogate pair counts as one code point)
+        private void putChar(String s, int i, char c) throws IOException {
+            if (pos + 4 > buf.length) flush();
+            if (c < 0x80) {
+                buf[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[pos++] = (byte) (0xC0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (isPair(s, i)) {
+                int cp = Character.toCodePoint(c, s.charAt(i + 1));
+                buf[pos++] = (byte) (0xF0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                buf[pos++] = (byte) (0xE0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        void flush() throws IOException {
+            if (pos == 0) {
+                return;
+            }
+            write(buf, pos);
+            pos = 0;
+        }
+
+        private void write(byte[] bytes, int length) throws IOException {
+            if (gzip != null) {
+                gzip.write(bytes, 0, length);
+            } else {
+                ByteBuffer bb = ByteBuffer.wrap(bytes, 0, length);
+                while (bb.hasRemaining()) {
+                    channel.write(bb);
+                }
+            }
+            written += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            if (gzip != null) {
+                gzip.close(); // also closes the channel
+            } else {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Constant-memory listings of the Student, College and Courses tables.
+// page() uses keyset pagination on the primary key (key > ? ORDER BY key LIMIT ?), so every
+// page costs the same no matter how deep it is. stream() walks the whole table through a
+// forward-only cursor with a bounded fetch size instead of buffering it client side.
+class TableListing {
+
+    static final int STREAM_FETCH_SIZE = Integer.getInteger("listing.fetchSize", 1000);
+
+    enum Table {
+        STUDENT("Student", "student_id", "student_id, student_name, student_age, college_id_choice"),
+        COLLEGE("College", "college_id", "college_id, college_name, college_fees"),
+        COURSES("Courses", "course_id", "course_id, course_name, course_duration");
+
+        final String name;
+        final String key;
+        final String columns;
+
+        Table(String name, String key, String columns) {
+            this.name = name;
+            this.key = key;
+            this.columns = columns;
+        }
+    }
+
+    interface RowHandler {
+        void row(ResultSet rs) throws SQLException;
+    }
+
+    // Hand up to limit rows with key > afterKey to the handler.
+    // Returns the last key seen, or afterKey if there are no more rows.
+    static int page(Connection conn, Table table, int afterKey, int limit, RowHandler handler) throws SQLException {
+        String query = "SELECT " + table.columns + " FROM " + table.name
+                + " WHERE " + table.key + " > ? ORDER BY " + table.key + " LIMIT ?";
+        int lastKey = afterKey;
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, afterKey);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.row(rs);
+                    lastKey = rs.getInt(table.key);
+                }
+            }
+        }
+        return lastKey;
+    }
+
+    // Hand every row of the table to the handler in key order, streaming from the server.
+    // Returns the number of rows seen.
+    static long stream(Connection conn, Table table, RowHandler handler) throws SQLException {
+        String query = "SELECT " + table.columns + " FROM " + table.name + " ORDER BY " + table.key;
+        long rows = 0;
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(streamingFetchSize(conn));
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    handler.row(rs);
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Connector/J only streams row by row with Integer.MIN_VALUE (or with useCursorFetch=true);
+    // other drivers take a positive fetch size as the cursor batch size.
+    static int streamingFetchSize(Connection conn) throws SQLException {
+        String url = conn.getMetaData().getURL();
+        boolean mysql = url != null && url.startsWith("jdbc:mysql:");
+        if (mysql && !url.contains("useCursorFetch=true")) {
+            return Integer.MIN_VALUE;
+        }
+        return STREAM_FETCH_SIZE;
+    }
+}
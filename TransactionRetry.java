@@ -0,0 +1,194 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Runs transactions again when they lose a lock conflict with another client: deadlocks
+// (MySQL 1213, SQLState 40001) and lock wait timeouts (MySQL 1205, H2 50200). Such a failure
+// leaves nothing behind once rolled back, so the work can simply run again; every other
+// failure is passed through at once.
+//   -Dretry.maxAttempts=5     attempts per transaction, including the first
+//   -Dretry.baseDelayMs=2     before retry n, sleep a random time in [0, min(maxDelayMs, baseDelayMs * 2^(n-1))]
+//   -Dretry.maxDelayMs=200    ("full jitter": clients that collided do not retry in lockstep)
+//   -Dretry.budgetRatio=0.2   retries may add at most this fraction of first attempts (a token
+//                             bucket holding up to 100 retries); once it is spent, conflicts fail
+//                             without retrying, so a database in trouble is not hit by a retry storm
+// The lock is always released (rollback) before the backoff sleep.
+class TransactionRetry {
+
+    static final int MAX_ATTEMPTS = Integer.getInteger("retry.maxAttempts", 5);
+    static final long BASE_DELAY_MS = Long.getLong("retry.baseDelayMs", 2L);
+    static final long MAX_DELAY_MS = Long.getLong("retry.maxDelayMs", 200L);
+    static final double BUDGET_RATIO = Double.parseDouble(System.getProperty("retry.budgetRatio", "0.2"));
+    private static final double BUDGET_MAX = 100;
+
+    // Shared by the menu, HttpService, ShardedDataAccess and EnrollmentQueue
+    static final TransactionRetry DEFAULT = new TransactionRetry(MAX_ATTEMPTS, BASE_DELAY_MS, MAX_DELAY_MS, BUDGET_RATIO);
+
+    enum Failure { DEADLOCK, LOCK_TIMEOUT, OTHER }
+
+    interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final double budgetRatio;
+    private double budget = BUDGET_MAX;
+
+    private final LongAdder transactions = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder backoffNanos = new LongAdder();
+
+    TransactionRetry(int maxAttempts, long baseDelayMillis, long maxDelayMillis, double budgetRatio) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayNanos = baseDelayMillis * 1_000_000L;
+        this.maxDelayNanos = maxDelayMillis * 1_000_000L;
+        this.budgetRatio = budgetRatio;
+    }
+
+    static Failure classify(SQLException e) {
+        for (SQLException sql = e; sql != null; sql = sql.getNextException()) {
+            int code = sql.getErrorCode();
+            if (code == 1213 || "40001".equals(sql.getSQLState())) return Failure.DEADLOCK;
+            if (code == 1205 || code == 50200) return Failure.LOCK_TIMEOUT;
+        }
+        return Failure.OTHER;
+    }
+
+    // Run work as one transaction on conn (auto-commit off). Committed if it returns normally,
+    // rolled back if it throws; retried on lock conflicts.
+    <T> T transaction(Connection conn, Work<T> work) throws SQLException {
+        return transaction(conn, work, result -> true);
+    }
+
+    // As above, but the result is only committed if commitIf accepts it (a rejected request)
+    <T> T transaction(Connection conn, Work<T> work, Predicate<? super T> commitIf) throws SQLException {
+        transactions.increment();
+        deposit();
+        for (int attempt = 1; ; attempt++) {
+            T result;
+            try {
+                result = work.run(conn);
+                if (commitIf.test(result)) {
+                    conn.commit();
+                    ReferenceDataCache.committed();
+                    NameSearchIndex.committed();
+                    MutationJournal.committed();
+                    return result;
+                }
+            } catch (SQLException | RuntimeException e) {
+                rollback(conn, e);
+                if (e instanceof SQLException sql && retry(sql, attempt)) continue;
+                throw e;
+            }
+            rollback(conn, null);
+            return result;
+        }
+    }
+
+    // Run work inside the caller's open transaction, under a savepoint. A lock wait timeout undoes
+    // only the statement that timed out, so the work is rolled back to the savepoint and retried.
+    // A deadlock has already rolled back the whole transaction on the server, including the
+    // caller's earlier work, so it is rethrown for the caller to handle.
+    <T> T inOpenTransaction(Connection conn, Work<T> work) throws SQLException {
+        return inOpenTransaction(conn, null, work);
+    }
+
+    // As above, reusing a savepoint the caller set just before the work (CommitPolicy's) instead
+    // of paying a round trip for another one; null sets a new one
+    <T> T inOpenTransaction(Connection conn, Savepoint callerSavepoint, Work<T> work) throws SQLException {
+        transactions.increment();
+        deposit();
+        for (int attempt = 1; ; attempt++) {
+            // rolling back to a savepoint keeps it, so a reused one serves every attempt
+            Savepoint savepoint = callerSavepoint != null ? callerSavepoint : conn.setSavepoint();
+            int journalMark = MutationJournal.mark();
+            try {
+                return work.run(conn);
+            } catch (SQLException e) {
+                if (classify(e) != Failure.LOCK_TIMEOUT) throw e;
+                try {
+                    conn.rollback(savepoint);
+                    // undo the failed attempt's in-memory effects too, as CommitPolicy.undo does
+                    MutationJournal.discardFrom(journalMark);
+                    NameSearchIndex.rolledBackToSavepoint();
+                    ReportCounters.invalidate();
+                } catch (SQLException gone) {
+                    e.addSuppressed(gone);
+                    throw e;
+                }
+                if (!retry(e, attempt)) throw e;
+            }
+        }
+    }
+
+    private static void rollback(Connection conn, Exception cause) throws SQLException {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            if (cause == null) throw e;
+            cause.addSuppressed(e);
+        }
+        // writes of the attempt may already be reflected in the in-memory caches; a rejected
+        // request that wrote nothing leaves them alone
+        ReferenceDataCache.rolledBack();
+        NameSearchIndex.rolledBack();
+        MutationJournal.rolledBack();
+    }
+
+    // Whether to run the failed attempt again; sleeps the backoff first
+    private boolean retry(SQLException e, int attempt) {
+        Failure failure = classify(e);
+        if (failure == Failure.OTHER) return false;
+        (failure == Failure.DEADLOCK ? deadlocks : lockTimeouts).increment();
+        if (attempt >= maxAttempts) {
+            exhausted.increment();
+            return false;
+        }
+        if (!withdraw()) {
+            overBudget.increment();
+            return false;
+        }
+        long cap = Math.min(maxDelayNanos, baseDelayNanos << Math.min(attempt - 1, 30));
+        long delay = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        backoffNanos.add(delay);
+        retries.increment();
+        return true;
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(budget + budgetRatio, BUDGET_MAX);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) return false;
+        budget -= 1;
+        return true;
+    }
+
+    long retries() {
+        return retries.sum();
+    }
+
+    String stats() {
+        return "Transaction retry [maxAttempts=" + maxAttempts + ", transactions=" + transactions.sum()
+                + ", retries=" + retries.sum() + ", deadlocks=" + deadlocks.sum() + ", lockTimeouts=" + lockTimeouts.sum()
+                + ", exhausted=" + exhausted.sum() + ", overBudget=" + overBudget.sum()
+                + ", backoffMs=" + backoffNanos.sum() / 1_000_000L + "]";
+    }
+}